@@ -0,0 +1,47 @@
+package org.s30173.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.s30173.batch.BatchRunner;
+import org.s30173.batch.Scenario;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Scenarios per second for growing parallelism; compare the scores to check scaling with cores. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+    private static final int SCENARIOS = 1000;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    @Param({"1000"})
+    public int years;
+
+    private BatchRunner runner;
+    private List<Scenario> scenarios;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        runner = new BatchRunner(BenchData.MODEL).parallelism(parallelism);
+
+        Scenario base = Scenario.of(Path.of(BenchData.dataFile(years, 0)));
+        scenarios = new ArrayList<>(SCENARIOS);
+        for (int i = 0; i < SCENARIOS; i++)
+            scenarios.add(base.named("s" + i).with("twKI", 1.0 + i * 0.0001).with("twIMP", 1.1 - i * 0.0001));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SCENARIOS)
+    public long run(Blackhole bh) throws InterruptedException {
+        return runner.run(scenarios, bh::consume);
+    }
+}
@@ -0,0 +1,112 @@
+package org.s30173.bench;
+
+import org.s30173.helpers.SeriesFile;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.s30173.helpers.Config.*;
+
+/**
+ * Input generation and headless setup shared by the benchmarks.
+ * <p>
+ * Data files are scaled from {@code data1.txt}: the {@code LATA} header is stretched to {@code years}
+ * columns, every series from the base file gets a full row (growth rates slightly jittered, levels
+ * left as a single start value like the original) and {@code extraSeries} unbound rows are appended
+ * to model "thousands of series". Files are cached in {@code java.io.tmpdir} so forks reuse them.
+ */
+public final class BenchData {
+    public static final String MODEL = MODELS_PACKAGE + "Model1";
+    public static final String BASE_DATA = DATA_DIR + "data1.txt";
+    public static final String SCRIPT = SCRIPTS_DIR + "script1.groovy";
+    public static final String STATIC_SCRIPT = SCRIPTS_DIR + "script1Static.groovy"; // same, typed
+    public static final String ADHOC_SCRIPT = SCRIPTS_DIR + "adHocExampledata";
+
+    private static final Path CACHE_DIR = Path.of(System.getProperty("java.io.tmpdir"), "utp-bench");
+
+    private BenchData() {}
+
+    public static String dataFile(int years, int extraSeries) {
+        Path file = CACHE_DIR.resolve("data_" + years + "_" + extraSeries + ".txt");
+        if (Files.exists(file))
+            return file.toString();
+
+        try {
+            Files.createDirectories(CACHE_DIR);
+            Path tmp = Files.createTempFile(CACHE_DIR, "data", ".tmp");
+            try (BufferedWriter w = Files.newBufferedWriter(tmp)) {
+                w.write("LATA   ");
+                for (int y = 0; y < years; y++)
+                    w.append(' ').append(Integer.toString(2015 + y));
+                w.newLine();
+
+                for (Map.Entry<String, String> e : readBase().entrySet()) {
+                    w.write(e.getKey());
+                    w.write("    ");
+                    if (e.getKey().startsWith("tw")) {
+                        double rate = Double.parseDouble(e.getValue());
+                        for (int y = 0; y < years; y++)
+                            w.append(' ').append(Double.toString(rate + (y % 7) * 0.001));
+                    } else {
+                        w.write(e.getValue());
+                    }
+                    w.newLine();
+                }
+
+                for (int s = 0; s < extraSeries; s++) {
+                    w.write("X" + s);
+                    for (int y = 0; y < years; y++)
+                        w.append(' ').append(Double.toString(1000.0 + s + y * 0.25));
+                    w.newLine();
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Error generating benchmark data: " + file, e);
+        }
+        return file.toString();
+    }
+
+    // the same data converted with SeriesFile.convert
+    public static String snapshotFile(int years, int extraSeries) {
+        Path file = CACHE_DIR.resolve("data_" + years + "_" + extraSeries + ".utps");
+        if (Files.exists(file))
+            return file.toString();
+
+        try {
+            SeriesFile.convert(Path.of(dataFile(years, extraSeries)), file);
+        } catch (IOException e) {
+            throw new RuntimeException("Error generating benchmark data: " + file, e);
+        }
+        return file.toString();
+    }
+
+    public static String script() {
+        return script(SCRIPT);
+    }
+
+    public static String script(String file) {
+        try (Stream<String> lines = Files.lines(Path.of(file))) {
+            return lines.collect(Collectors.joining("\n"));
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading script file: " + file, e);
+        }
+    }
+
+    private static Map<String, String> readBase() throws IOException {
+        Map<String, String> base = new LinkedHashMap<>();
+        try (Stream<String> lines = Files.lines(Path.of(BASE_DATA))) {
+            lines.filter(line -> !line.startsWith("LATA "))
+                 .map(line -> line.trim().split("\\s+"))
+                 .forEach(parts -> base.put(parts[0], parts[1]));
+        }
+        return base;
+    }
+}
@@ -0,0 +1,47 @@
+package org.s30173.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.s30173.Controller;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class LoadBenchmark {
+    @Param({"5", "10000", "100000"})
+    public int years;
+
+    @Param({"10", "1000"})
+    public int extraSeries;
+
+    private String dataFile;
+    private String snapshotFile;
+    private Controller controller;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        dataFile = BenchData.dataFile(years, extraSeries);
+        snapshotFile = BenchData.snapshotFile(years, extraSeries);
+        controller = new Controller(BenchData.MODEL);
+    }
+
+    @Benchmark
+    public Controller readDataFrom() {
+        return controller.readDataFrom(dataFile);
+    }
+
+    @Benchmark
+    public Controller readSnapshot() {
+        return controller.readDataFrom(snapshotFile);
+    }
+
+    // load plus binding, where the snapshot's bound series get copied
+    @Benchmark
+    public Controller readSnapshotAndRun() {
+        return controller.readDataFrom(snapshotFile).runModel();
+    }
+}
@@ -0,0 +1,46 @@
+package org.s30173.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.s30173.batch.Distribution;
+import org.s30173.batch.MonteCarlo;
+import org.s30173.helpers.Model;
+import org.s30173.helpers.SeriesFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/** Draws per second of Model1 with all growth rates varied, for growing parallelism and horizons. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class MonteCarloBenchmark {
+    private static final int DRAWS = 10_000;
+
+    @Param({"1", "4", "8"})
+    public int parallelism;
+
+    @Param({"5", "100"})
+    public int years;
+
+    private MonteCarlo monteCarlo;
+    private SeriesFile.Snapshot data;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        monteCarlo = new MonteCarlo().draws(DRAWS).parallelism(parallelism);
+        for (String series : new String[]{"twKI", "twKS", "twINW", "twEKS", "twIMP"})
+            monteCarlo.vary(series, Distribution.normal(0.01));
+        data = SeriesFile.map(Path.of(BenchData.snapshotFile(years, 0)));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DRAWS)
+    public MonteCarlo.Result run() throws ClassNotFoundException {
+        return monteCarlo.run(Class.forName(BenchData.MODEL).asSubclass(Model.class),
+            data.lata(), data.series());
+    }
+}
@@ -0,0 +1,184 @@
+package org.s30173.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.s30173.Controller;
+import org.s30173.SeriesTableModel;
+import org.s30173.helpers.NumberFormatter;
+import org.s30173.helpers.ScriptCache;
+
+import javax.script.ScriptException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class PipelineBenchmark {
+    // measures formatting and encoding only
+    private static final WritableByteChannel DISCARD = new WritableByteChannel() {
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            src.position(src.limit());
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {}
+    };
+
+    @Param({"5", "10000", "100000"})
+    public int years;
+
+    private Controller controller;
+    private Controller staticController;
+    private Controller reusingController;
+    private final SeriesTableModel table = new SeriesTableModel();
+    private String script;
+    private String staticScript;
+    private List<String> scripts;
+    private double[] row;
+    private int next;
+
+    private MethodHandle addTableRow;
+
+    @Setup(Level.Trial)
+    public void setup() throws ReflectiveOperationException, ScriptException {
+        controller = new Controller(BenchData.MODEL, table)
+                .readDataFrom(BenchData.dataFile(years, 0))
+                .runModel();
+        script = BenchData.script();
+        controller.runScript(script); // results now include the script vars as well
+
+        staticScript = BenchData.script(BenchData.STATIC_SCRIPT);
+        staticController = new Controller(BenchData.MODEL)
+                .compileStatic(true)
+                .readDataFrom(BenchData.dataFile(years, 0))
+                .runModel()
+                .runScript(staticScript);
+
+        reusingController = new Controller(BenchData.MODEL)
+                .reuseBuffers(true)
+                .readDataFrom(BenchData.dataFile(years, 0))
+                .runModel();
+
+        scripts = List.of(script, BenchData.script(BenchData.ADHOC_SCRIPT)); // independent of each other
+
+        row = new double[years];
+        for (int i = 0; i < years; i++)
+            row[i] = 0.5 + i * 1234.567;
+
+        MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(Controller.class, MethodHandles.lookup());
+        addTableRow = lookup.findVirtual(Controller.class, "addTableRow",
+                MethodType.methodType(void.class, String.class, Object.class));
+    }
+
+    @Benchmark
+    public Controller runModel() {
+        return controller.runModel();
+    }
+
+    // series kept and refilled in place, no table; this is the allocation check of reuseBuffers:
+    // run with -prof gc (e.g. -prof gc PipelineBenchmark.runModelReusingBuffers), gc.alloc.rate.norm
+    // should be ~0 B/op, against the KBs of runModel
+    @Benchmark
+    public Controller runModelReusingBuffers() {
+        return reusingController.runModel();
+    }
+
+    @Benchmark
+    public Controller runScript(ScriptCacheCounters cache) throws ScriptException {
+        return controller.runScript(script);
+    }
+
+    // the same script typed and compiled with @CompileStatic
+    @Benchmark
+    public Controller runScriptStatic(ScriptCacheCounters cache) throws ScriptException {
+        return staticController.runScript(staticScript);
+    }
+
+    // the two scripts one by one, then as a batch (in parallel, one re-run and refresh)
+    @Benchmark
+    public Controller runScriptsSerially() throws ScriptException {
+        for (String s : scripts)
+            controller.runScript(s);
+        return controller;
+    }
+
+    @Benchmark
+    public Controller runScriptsBatch() throws ScriptException {
+        return controller.runScripts(scripts);
+    }
+
+    @Benchmark
+    public String getResultsAsTsv() {
+        return controller.getResultsAsTsv();
+    }
+
+    @Benchmark
+    public Controller writeResultsAsTsv() throws IOException {
+        return controller.writeResultsAsTsv(DISCARD);
+    }
+
+    @Benchmark
+    public Controller writeResultsAsBinary() throws IOException {
+        return controller.writeResultsAsBinary(DISCARD);
+    }
+
+    @Benchmark
+    public String formatNumber() {
+        double value = row[next++ % row.length];
+        return NumberFormatter.format(value);
+    }
+
+    @Benchmark
+    public void addTableRow(TableRows rows) throws Throwable {
+        addTableRow.invokeExact(controller, "PKB", (Object) row);
+    }
+
+    @State(Scope.Benchmark)
+    public static class TableRows {
+        @TearDown(Level.Invocation)
+        public void clearRows(PipelineBenchmark b) {
+            b.table.clearRows(); // addTableRow only appends
+        }
+    }
+
+    // ScriptCache hits and misses of each iteration, reported by JMH next to the score
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ScriptCacheCounters {
+        public long cacheHits;
+        public long cacheMisses;
+        private long hitsBefore;
+        private long missesBefore;
+
+        @Setup(Level.Iteration)
+        public void start() {
+            cacheHits = 0;
+            cacheMisses = 0;
+            hitsBefore = ScriptCache.hits();
+            missesBefore = ScriptCache.misses();
+        }
+
+        @TearDown(Level.Iteration)
+        public void end() {
+            cacheHits = ScriptCache.hits() - hitsBefore;
+            cacheMisses = ScriptCache.misses() - missesBefore;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.s30173.bench;
+
+import org.s30173.helpers.Config;
+import org.s30173.server.ModelServer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of {@link ModelServer}: many concurrent clients on virtual threads, each opening a session,
+ * running the benchmark script and fetching the results in rounds, then closing it. Reports throughput
+ * and p50/p99 latency per kind of request. Not a JMH benchmark, run it directly:
+ * <pre>
+ *   java -cp ... org.s30173.bench.ServerLoadTest [clients] [rounds] [years]
+ * </pre>
+ * The server runs in-process on a free loopback port, over the generated data of {@code years}.
+ */
+public final class ServerLoadTest {
+    enum Kind { OPEN, SCRIPT, RESULTS, CLOSE }
+
+    private ServerLoadTest() {}
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int years = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+        Path data = Path.of(BenchData.dataFile(years, 0));
+        Config.DATA_DIR = data.getParent() + "/"; // after BenchData read the base data from the original
+        String script = BenchData.script();
+
+        HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+        AtomicLong failed = new AtomicLong();
+
+        try (ModelServer server = new ModelServer(0).start()) {
+            String base = "http://127.0.0.1:" + server.port() + "/sessions";
+            String dataName = data.getFileName().toString();
+            List<Future<long[][]>> results = new ArrayList<>();
+            long start = System.nanoTime();
+            try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < clients; i++)
+                    results.add(pool.submit(() -> client(http, base, server.token(), dataName, script, rounds, failed)));
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            long[][] latencies = new long[Kind.values().length][];
+            for (Kind kind : Kind.values()) {
+                List<long[]> all = new ArrayList<>();
+                for (Future<long[][]> f : results)
+                    all.add(f.get()[kind.ordinal()]);
+                latencies[kind.ordinal()] = all.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+            }
+            long requests = Arrays.stream(latencies).mapToLong(l -> l.length).sum();
+
+            System.out.printf("%d clients x %d rounds on %d years: %d requests in %.2f s, %.0f req/s, %d failed%n",
+                clients, rounds, years, requests, seconds, requests / seconds, failed.get());
+            for (Kind kind : Kind.values()) {
+                long[] l = latencies[kind.ordinal()];
+                System.out.printf("  %-8s p50 %8.2f ms  p99 %8.2f ms  (%d)%n", kind.name().toLowerCase(),
+                    percentile(l, 50) / 1e6, percentile(l, 99) / 1e6, l.length);
+            }
+        }
+    }
+
+
+    // Helpers
+    // one session: latencies in ns per kind
+    private static long[][] client(HttpClient http, String base, String token, String data, String script,
+                                   int rounds, AtomicLong failed) throws IOException, InterruptedException {
+        long[][] latencies = {new long[1], new long[rounds], new long[rounds], new long[1]};
+
+        long t = System.nanoTime();
+        HttpResponse<String> open = send(http, HttpRequest.newBuilder(URI.create(base + "?model=Model1&data=" + data))
+            .header("Authorization", "Bearer " + token)
+            .POST(HttpRequest.BodyPublishers.noBody()), failed);
+        latencies[Kind.OPEN.ordinal()][0] = System.nanoTime() - t;
+        String session = base + "/" + open.body().strip();
+
+        for (int r = 0; r < rounds; r++) {
+            t = System.nanoTime();
+            send(http, HttpRequest.newBuilder(URI.create(session + "/script"))
+                .POST(HttpRequest.BodyPublishers.ofString(script)), failed);
+            latencies[Kind.SCRIPT.ordinal()][r] = System.nanoTime() - t;
+
+            t = System.nanoTime();
+            send(http, HttpRequest.newBuilder(URI.create(session + "/results")).GET(), failed);
+            latencies[Kind.RESULTS.ordinal()][r] = System.nanoTime() - t;
+        }
+
+        t = System.nanoTime();
+        send(http, HttpRequest.newBuilder(URI.create(session)).DELETE(), failed);
+        latencies[Kind.CLOSE.ordinal()][0] = System.nanoTime() - t;
+        return latencies;
+    }
+
+    private static HttpResponse<String> send(HttpClient http, HttpRequest.Builder request, AtomicLong failed)
+            throws IOException, InterruptedException {
+        HttpResponse<String> response = http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            failed.incrementAndGet();
+            System.err.println(response.statusCode() + " " + response.uri().getPath() + ": " + response.body().strip());
+        }
+        return response;
+    }
+
+    // nearest rank of sorted values
+    private static long percentile(long[] sorted, double percent) {
+        if (sorted.length == 0)
+            return 0;
+        int rank = (int) Math.ceil(percent / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(rank, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,74 @@
+package org.s30173.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.s30173.batch.Model1Scenarios;
+import org.s30173.helpers.BindFields;
+import org.s30173.helpers.Model;
+import org.s30173.models.Model1;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** Model1 over many growth-rate vectors: one model per scenario vs the structure-of-arrays kernel. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class VectorBenchmark {
+    @Param({"1000", "10000"})
+    public int scenarios;
+
+    @Param({"100", "1000"})
+    public int years;
+
+    private Model1Scenarios soa;
+    private Model[] models;
+    private BindFields bindFields;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        soa = new Model1Scenarios(years, scenarios);
+        models = new Model[scenarios];
+        bindFields = BindFields.of(Model1.class);
+
+        for (int s = 0; s < scenarios; s++) {
+            Map<String, double[]> d = new HashMap<>();
+            d.put("twKI", new double[]{1.03 + s * 1e-6});
+            d.put("twKS", new double[]{1.04});
+            d.put("twINW", new double[]{1.12 - s * 1e-6});
+            d.put("twEKS", new double[]{1.13});
+            d.put("twIMP", new double[]{1.14});
+            d.put("KI", new double[]{1023752.2});
+            d.put("KS", new double[]{315397});
+            d.put("INW", new double[]{348358});
+            d.put("EKS", new double[]{811108.6});
+            d.put("IMP", new double[]{784342.4});
+            soa.set(s, d);
+            models[s] = new Model1();
+            bindFields.bind(models[s], years, d);
+        }
+    }
+
+    @Benchmark
+    public Model1Scenarios soa() {
+        soa.run();
+        return soa;
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Dutp.noVector=true"})
+    public Model1Scenarios soaScalar() {
+        soa.run();
+        return soa;
+    }
+
+    @Benchmark
+    public Model[] perModel() {
+        for (Model m : models)
+            m.run();
+        return models;
+    }
+}
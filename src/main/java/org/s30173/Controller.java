@@ -1,95 +1,484 @@
 package org.s30173;
 
-import org.s30173.helpers.Bind;
+import org.s30173.batch.MonteCarlo;
+import org.s30173.helpers.BindField;
+import org.s30173.helpers.BindFields;
+import org.s30173.helpers.DatasetCache;
+import org.s30173.helpers.EnginePool;
 import org.s30173.helpers.Model;
+import org.s30173.helpers.ScriptAccess;
+import org.s30173.helpers.ScriptCache;
+import org.s30173.helpers.Series;
+import org.s30173.helpers.SeriesBuffers;
+import org.s30173.helpers.SeriesFile;
+import org.s30173.helpers.SeriesFile.Snapshot;
+import org.s30173.helpers.SeriesStorage;
+import org.s30173.helpers.StaticScripts;
+import org.s30173.helpers.TsvWriter;
+import org.s30173.helpers.ValueSnapshot;
+import org.s30173.metrics.Stage;
+import org.s30173.metrics.StageTrace;
+import org.s30173.versions.Version;
+import org.s30173.versions.VersionHistory;
 
 import javax.script.*;
 import java.io.IOException;
-import java.lang.reflect.Field;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-public class Controller {
+// closing frees the Series of the last run (see storage), a heap-only controller needn't be closed
+public class Controller implements AutoCloseable {
     private final Model model;
-    private final Set<Field> bindFields;
-    private final Map<String, Field> bindFieldNames = new HashMap<>();
+    private final BindFields bindFields;
+    private final int boundSeries; // double[] and Series fields
 
-    private final Map<String, double[]> dataFromFile = new HashMap<>();
+    private final Map<String, MemorySegment> dataFromFile = new HashMap<>(); // views, copied only when bound
     private String[] lata;
+    private String dataFile; // last one read, for tracing
 
     private final Map<String, Object> scriptVars = new LinkedHashMap<>();
-    private final ScriptEngine groovy = new ScriptEngineManager().getEngineByName("groovy");
+    private final ValueSnapshot shown = new ValueSnapshot(); // @Bind fields and script vars as last reported
+    private final EnginePool engines = EnginePool.shared();
+    private final ScriptContext scriptContext = engines.newContext(); // this controller's script variables
+    private final Bindings bindings = scriptContext.getBindings(ScriptContext.ENGINE_SCOPE);
+    private final ResultsListener results;
+    private boolean compileStatic;
+    private SeriesStorage storage = SeriesStorage.HEAP;
+    private SeriesStorage.Scope scope = storage.open(); // Series fields and snapshots of the current run
+    private SeriesBuffers buffers; // null unless reused across runs
+    private final VersionHistory versions = new VersionHistory();
+    private boolean keepVersions;
 
     public Controller(String modelClassName) {
+        this(modelClassName, ResultsListener.NONE);
+    }
+
+    public Controller(String modelClassName, ResultsListener results) {
+        this.results = results;
         try {
             this.model = (Model) Class.forName(modelClassName).getDeclaredConstructor().newInstance();
-            this.bindFields = getBindFields();
+            this.bindFields = BindFields.of(model.getClass());
         } catch (Exception e) {
             throw new RuntimeException("Error creating model from class: " + modelClassName, e);
         }
+        this.boundSeries = (int) bindFields.stream().filter(f -> f.isDoubles() || f.isSeries()).count();
+    }
+
+    // scripts run from now on are compiled with @CompileStatic, see StaticScripts
+    public Controller compileStatic(boolean compileStatic) {
+        this.compileStatic = compileStatic;
+        return this;
+    }
+
+    // where Series @Bind fields are allocated from the next runModel on, e.g. SeriesStorage.OFF_HEAP
+    public Controller storage(SeriesStorage storage) {
+        this.storage = storage;
+        if (buffers != null)
+            buffers.clear();
+        return this;
+    }
+
+    // from the next runModel on the @Bind series are kept and refilled in place while the number of years
+    // stays the same (see SeriesBuffers), so re-runs allocate nothing; script vars referencing one of them
+    // get a copy before it is refilled
+    public Controller reuseBuffers(boolean reuse) {
+        buffers = reuse ? new SeriesBuffers(bindFields) : null;
+        return this;
     }
 
+    // from now on every model run, script batch and Monte Carlo run commits a version of the results
+    public Controller keepVersions(boolean keep) {
+        this.keepVersions = keep;
+        return this;
+    }
+
+    // text data file, or a snapshot made by SeriesFile.convert which is mapped instead of parsed;
+    // unchanged files come from the shared DatasetCache
     public Controller readDataFrom(String fileName) {
-        try (Stream<String> lines = Files.lines(Path.of(fileName))) {
-            lines.forEach(line -> {
-                if (line.startsWith("LATA ")) {
-                    lata = line.substring(5).trim().split("\\s+");
-                } else {
-                    String[] parts = line.trim().split("\\s+");
-                    double[] values = Arrays.stream(parts, 1, parts.length)
-                            .mapToDouble(Double::parseDouble)
-                            .toArray();
-                    dataFromFile.put(parts[0], values);
-                }
-            });
+        dataFile = fileName;
+        StageTrace trace = trace(Stage.LOAD);
+        try {
+            Snapshot data = DatasetCache.load(Path.of(fileName));
+            if (data.lata() != null)
+                lata = data.lata();
+            dataFromFile.putAll(data.series());
+
+            long bytes = 0;
+            for (MemorySegment values : data.series().values())
+                bytes += values.byteSize();
+            trace.series(data.series().size()).years(lata != null ? lata.length : 0).bytes(bytes);
         } catch (IOException e) {
+            trace.failed();
             throw new RuntimeException("Error reading data file: " + fileName, e);
+        } catch (Throwable e) {
+            trace.failed();
+            throw e;
+        } finally {
+            trace.end();
         }
         return this;
     }
 
     public Controller runModel() {
-        bindFields.forEach((field) -> {
-            Object value = field.getName().equals("LL") ?
-                lata.length : prepareArray(dataFromFile.get(field.getName()), lata.length);
-            setValue(field, value);
-        });
-        model.run();
+        // the previous run's series stay valid until the model and scripts reference the new ones
+        SeriesStorage.Scope previous = scope;
+        if (buffers != null && buffers.fits(lata.length)) {
+            detachFromBuffers();
+        } else {
+            scope = storage.open();
+            shown.scope(scope);
+        }
 
-        // make fields (with @Bind from the model) available in the script
-        bindFields.forEach((field) -> groovy.put(field.getName(), getValue(field)));
+        StageTrace trace = trace(Stage.BIND).bytes(boundBytes());
+        try {
+            if (buffers != null)
+                buffers.bind(model, lata.length, dataFromFile, scope);
+            else
+                bindFields.bindSegments(model, lata.length, dataFromFile, scope);
+        } catch (Throwable e) {
+            trace.failed();
+            throw e;
+        } finally {
+            trace.end();
+        }
+
+        trace = trace(Stage.RUN).bytes(boundBytes());
+        try {
+            model.run();
+        } catch (Throwable e) {
+            trace.failed();
+            throw e;
+        } finally {
+            trace.end();
+        }
 
-        GUI.addColumns(lata);
-        addBindFieldsIntoTable();
+        // make fields (with @Bind from the model) available in the script;
+        // indexed loops here and below, runModel is too large for iterators to be optimized away
+        List<BindField> fields = bindFields.list();
+        for (int i = 0; i < fields.size(); i++)
+            bindings.put(fields.get(i).name(), getValue(fields.get(i)));
+
+        trace = trace(Stage.TABLE);
+        try {
+            results.columns(lata);
+            addBindFieldsIntoTable();
+        } catch (Throwable e) {
+            trace.failed();
+            throw e;
+        } finally {
+            trace.end();
+        }
+
+        // script var rows are gone, the copies of the fields are overwritten in place
+        if (!scriptVars.isEmpty())
+            scriptVars.keySet().forEach(shown::remove);
+        for (int i = 0; i < fields.size(); i++)
+            shown.put(fields.get(i).name(), getValue(fields.get(i)));
+
+        if (previous != scope) {
+            // script vars holding series of the previous scope keep a heap copy
+            scriptVars.replaceAll((name, value) -> value instanceof Series v ? Series.wrap(v.toArray()) : value);
+            scriptVars.forEach((name, value) -> {
+                if (value instanceof Series)
+                    bindings.put(name, value);
+            });
+            previous.close();
+        }
 
+        if (keepVersions)
+            commit("run on " + dataFile);
         return this;
     }
 
     public Controller runScriptFromFile(String fileName) throws ScriptException {
-        String script;
+        runScript(readScript(fileName));
+        return this;
+    }
 
-        try (Stream<String> lines = Files.lines(Path.of(fileName))) {
-            script = lines.collect(Collectors.joining("\n"));
+    public Controller runScriptsFromFiles(List<String> fileNames) throws ScriptException {
+        List<String> scripts = new ArrayList<>();
+        for (String fileName : fileNames)
+            scripts.add(readScript(fileName));
+        return runScripts(scripts);
+    }
+
+    public Controller runScript(String script) throws ScriptException {
+        CompiledScript compiled = compile(script);
+
+        StageTrace trace = trace(Stage.SCRIPT_EVAL);
+        try {
+            compiled.eval(scriptContext);
+        } catch (Throwable e) {
+            trace.failed();
+            throw e;
+        } finally {
+            trace.end();
+        }
+
+        takeScriptVars();
+        rerunChanged();
+
+        trace = trace(Stage.TABLE);
+        try {
+            refreshTable();
+        } catch (Throwable e) {
+            trace.failed();
+            throw e;
+        } finally {
+            trace.end();
+        }
+
+        if (keepVersions)
+            commit("script");
+        return this;
+    }
+
+    /**
+     * Same results as running the scripts one by one, in order. Scripts that don't touch each other's
+     * variables (see {@link ScriptAccess}) run at the same time, each on its own copy of the bindings,
+     * and their variables are merged afterwards. Scripts changing objects in place or assigning
+     * {@code @Bind} fields run on their own, as other variables may reference what they change. The
+     * model is re-run and the table refreshed once at the end, and before the scripts that follow one
+     * that may have changed a {@code @Bind} field.
+     */
+    public Controller runScripts(List<String> scripts) throws ScriptException {
+        List<ScriptAccess> access = new ArrayList<>();
+        for (String script : scripts)
+            access.add(ScriptAccess.of(script));
+
+        // wave of a script: one after the last earlier script it conflicts with
+        Set<String> bindNames = bindFields.stream().map(BindField::name).collect(Collectors.toSet());
+        int[] wave = new int[scripts.size()];
+        int waves = 0;
+        for (int i = 0; i < scripts.size(); i++) {
+            for (int j = 0; j < i; j++) {
+                if (access.get(j).conflictsWith(access.get(i), bindNames))
+                    wave[i] = Math.max(wave[i], wave[j] + 1);
+            }
+            waves = Math.max(waves, wave[i] + 1);
+        }
+
+        Set<String> varsBefore = new HashSet<>(scriptVars.keySet());
+        Exception failure = null;
+        boolean bindWritten = false;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int w = 0; w < waves && failure == null; w++) {
+                List<Integer> batch = new ArrayList<>();
+                for (int i = 0; i < scripts.size(); i++) {
+                    if (wave[i] == w)
+                        batch.add(i);
+                }
+                if (bindWritten) {
+                    rerunChanged(); // later scripts see the model's results, as they would one by one
+                    bindWritten = false;
+                }
+
+                List<Callable<Bindings>> tasks = new ArrayList<>();
+                for (int i : batch)
+                    tasks.add(isolated(scripts.get(i)));
+                List<Future<Bindings>> results;
+                try {
+                    results = executor.invokeAll(tasks);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Interrupted while running scripts");
+                }
+
+                // merged in script order, up to the first failure
+                for (int k = 0; k < batch.size() && failure == null; k++) {
+                    try {
+                        merge(results.get(k).get());
+                        takeScriptVars();
+                        bindWritten |= access.get(batch.get(k)).writesAny(bindNames);
+                    } catch (ExecutionException e) {
+                        failure = e.getCause() instanceof Exception cause ? cause : e;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new CancellationException("Interrupted while running scripts");
+                    }
+                }
+            }
+        }
+
+        orderNewVars(varsBefore, access);
+        rerunChanged();
+        StageTrace trace = trace(Stage.TABLE);
+        try {
+            refreshTable();
+        } catch (Throwable e) {
+            trace.failed();
+            throw e;
+        } finally {
+            trace.end();
+        }
+        if (keepVersions)
+            commit(scripts.size() + " scripts");
+
+        if (failure instanceof ScriptException e)
+            throw e;
+        if (failure instanceof RuntimeException e)
+            throw e;
+        if (failure != null)
+            throw new RuntimeException("Error running script", failure);
+        return this;
+    }
+
+    // draws the model from this controller's @Bind series as they are now, with what scripts changed in
+    // them, see MonteCarlo; the percentile rows (PKB_p5, ...) become script vars, so they are in the table
+    // and the exports and scripts can use them
+    public Controller runMonteCarlo(MonteCarlo monteCarlo) {
+        Map<String, MemorySegment> current = new HashMap<>();
+        for (BindField field : bindFields) {
+            if (field.isDoubles())
+                current.put(field.name(), MemorySegment.ofArray(field.getDoubles(model)));
+            else if (field.isSeries())
+                current.put(field.name(), field.getSeries(model).segment());
+        }
+
+        StageTrace trace = trace(Stage.MONTE_CARLO);
+        MonteCarlo.Result result;
+        try {
+            result = monteCarlo.run(model.getClass(), lata, dataFromFile, current);
+        } catch (Throwable e) {
+            trace.failed();
+            throw e;
+        } finally {
+            trace.end();
+        }
+
+        result.rows().forEach((name, values) -> {
+            scriptVars.put(name, values);
+            bindings.put(name, values);
+        });
+
+        trace = trace(Stage.TABLE);
+        try {
+            refreshTable();
+        } catch (Throwable e) {
+            trace.failed();
+            throw e;
+        } finally {
+            trace.end();
+        }
+
+        if (keepVersions)
+            commit("Monte Carlo");
+        return this;
+    }
+
+    // the results as they are now, sharing what didn't change since the head of versions()
+    public Version commit(String label) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (BindField field : bindFields)
+            values.put(field.name(), getValue(field));
+        values.putAll(scriptVars);
+        return versions.commit(label, lata, values);
+    }
+
+    // puts the results of a version back as they were, without running anything: LATA, @Bind fields and
+    // script vars; the data read stays as it is, the next runModel binds it again
+    public Controller rollback(int versionId) {
+        Version version = versions.checkout(versionId);
+        lata = version.lata();
+        for (BindField field : bindFields) {
+            if (version.contains(field.name()))
+                setValue(field, version.restore(field.name(), scope));
+        }
+
+        scriptVars.keySet().forEach(bindings::remove);
+        scriptVars.keySet().forEach(shown::remove);
+        scriptVars.clear();
+        for (String name : version.names()) {
+            if (bindFields.get(name) == null)
+                scriptVars.put(name, version.restore(name, scope));
+        }
+        for (BindField field : bindFields)
+            bindings.put(field.name(), getValue(field));
+        bindings.putAll(scriptVars);
+
+        StageTrace trace = trace(Stage.TABLE);
+        try {
+            results.columns(lata);
+            addBindFieldsIntoTable();
+            for (BindField field : bindFields)
+                shown.put(field.name(), getValue(field));
+            refreshTable(); // script var rows
+        } catch (Throwable e) {
+            trace.failed();
+            throw e;
+        } finally {
+            trace.end();
+        }
+        return this;
+    }
+
+    public List<VersionHistory.Change> diff(int fromVersion, int toVersion) {
+        return VersionHistory.diff(versions.get(fromVersion), versions.get(toVersion));
+    }
+
+    public VersionHistory versions() {
+        return versions;
+    }
+
+    public String getResultsAsTsv() {
+        StringBuilder res = new StringBuilder(4096);
+        try {
+            writeResultsAsTsv(new TsvWriter(res));
         } catch (IOException e) {
-            throw new RuntimeException("Error reading script file: " + fileName, e);
+            throw new RuntimeException("Error writing results", e); // StringBuilder doesn't throw
         }
+        return res.toString();
+    }
 
-        runScript(script);
+    // same content as getResultsAsTsv, streamed
+    public Controller writeResultsAsTsv(Appendable out) throws IOException {
+        writeResultsAsTsv(new TsvWriter(out));
         return this;
     }
 
-    public Controller runScript(String script) throws ScriptException {
-        groovy.eval(script);
+    public Controller writeResultsAsTsv(WritableByteChannel out) throws IOException {
+        writeResultsAsTsv(new TsvWriter(out));
+        return this;
+    }
 
-        // process script vars after running the script
+    // numeric rows (double[], int[] and Series) as a SeriesFile, other script vars are left out
+    public Controller writeResultsAsBinary(WritableByteChannel out) throws IOException {
+        Map<String, MemorySegment> series = new LinkedHashMap<>();
+        bindFields.stream()
+           .filter(field -> !field.name().equals("LL"))
+           .forEach(field -> putSeries(series, field.name(), getValue(field)));
+        scriptVars.forEach((name, value) -> putSeries(series, name, value));
+
+        StageTrace trace = trace(Stage.EXPORT);
+        try {
+            trace.bytes(SeriesFile.write(out, lata, series));
+        } catch (Throwable e) {
+            trace.failed();
+            throw e;
+        } finally {
+            trace.end();
+        }
+        return this;
+    }
+
+    @Override
+    public void close() {
+        scope.close();
+    }
+
+
+    // Helpers
+    // process script vars after running a script
+    private void takeScriptVars() {
         List<String> varsToRemove = new ArrayList<>();
 
-        Bindings bindings = groovy.getBindings(ScriptContext.ENGINE_SCOPE);
         bindings.forEach((key, value) -> {
             // collect single lowercase letters to remove later
             if (key.length() == 1 &&
@@ -99,7 +488,7 @@ public class Controller {
                 return;
             }
 
-            Field field = bindFieldNames.get(key);
+            BindField field = bindFields.get(key);
             if (field != null) {
                 // update field's value because it might have changed during this script
                 setValue(field, value);
@@ -111,143 +500,210 @@ public class Controller {
         });
 
         varsToRemove.forEach(varName -> bindings.remove(varName));
-
-        model.run(); // rerun calculations, as values might have changed during this script
-
-        // update table
-        GUI.tableModel.setNumRows(0); // clear old rows
-        addBindFieldsIntoTable(); // add rows with @Bind
-        scriptVars.forEach((name, value) -> addTableRow(name, value)); // add rows from script vars
-
-        return this;
     }
 
-    public String getResultsAsTsv() {
-        StringBuilder res = new StringBuilder(4096);
-
-        appendRow(res, "LATA", String.join("\t", lata));
-
-        bindFields.stream()
-           .filter(field -> !field.getName().equals("LL"))
-           .forEach(field -> appendRow(res, field.getName(), fieldValueToStr(getValue(field))));
-
-        scriptVars.forEach((name, value) -> appendRow(res, name, fieldValueToStr(value)));
-
-        return res.toString();
+    // rerun calculations only if a script changed @Bind values, and only from the first changed year
+    private void rerunChanged() {
+        int fromYear = -1;
+        for (BindField field : bindFields) {
+            int changed = shown.mismatch(field.name(), getValue(field));
+            if (changed >= 0 && (fromYear < 0 || changed < fromYear))
+                fromYear = changed;
+        }
+        if (fromYear >= 0) {
+            StageTrace trace = trace(Stage.RUN).bytes(boundBytes());
+            try {
+                model.run(fromYear);
+            } catch (Throwable e) {
+                trace.failed();
+                throw e;
+            } finally {
+                trace.end();
+            }
+        }
     }
 
+    // compiled once per distinct script text, shared across controllers
+    private CompiledScript compile(String script) throws ScriptException {
+        StageTrace trace = trace(Stage.SCRIPT_COMPILE).bytes(script.length());
+        try {
+            return compileStatic ?
+                ScriptCache.getStatic(variableTypes(), script) : ScriptCache.get(engines, script);
+        } catch (Throwable e) {
+            trace.failed();
+            throw e;
+        } finally {
+            trace.end();
+        }
+    }
 
-    // Helpers
-    private LinkedHashSet<Field> getBindFields() {
-        return Arrays.stream(model.getClass().getDeclaredFields())
-                .filter(field -> field.isAnnotationPresent(Bind.class))
-                .peek(field -> {
-                    field.setAccessible(true);
-                    bindFieldNames.put(field.getName(), field);
-                })
-                .collect(Collectors.toCollection(LinkedHashSet::new));
+    // runs the script on a copy of the bindings, which it returns
+    private Callable<Bindings> isolated(String script) {
+        return () -> {
+            CompiledScript compiled = compile(script);
+            ScriptContext context = engines.newContext();
+            Bindings copy = context.getBindings(ScriptContext.ENGINE_SCOPE);
+            copy.putAll(bindings);
+
+            StageTrace trace = trace(Stage.SCRIPT_EVAL);
+            try {
+                compiled.eval(context);
+            } catch (Throwable e) {
+                trace.failed();
+                throw e;
+            } finally {
+                trace.end();
+            }
+            return copy;
+        };
     }
 
-    private double[] prepareArray(double[] vals, int len) {
-        if (vals == null)
-            return new double[len];
+    // what a script assigned (new or other references), element writes are already in place
+    private void merge(Bindings result) {
+        result.forEach((key, value) -> {
+            if (!bindings.containsKey(key) || bindings.get(key) != value)
+                bindings.put(key, value);
+        });
+    }
 
-        double[] arr = new double[len];
-        System.arraycopy(vals, 0, arr, 0, vals.length);
+    // new script vars in the order the scripts would have added them one by one (rows follow this order)
+    private void orderNewVars(Set<String> before, List<ScriptAccess> access) {
+        List<String> added = scriptVars.keySet().stream().filter(name -> !before.contains(name)).toList();
+        ToIntFunction<String> firstWriter = name -> {
+            for (int i = 0; i < access.size(); i++) {
+                if (access.get(i).writes().contains(name))
+                    return i;
+            }
+            return access.size();
+        };
+        for (String name : added.stream().sorted(Comparator.comparingInt(firstWriter)).toList())
+            scriptVars.put(name, scriptVars.remove(name));
+    }
 
-        if (vals.length < len)
-            Arrays.fill(arr, vals.length, len, vals[vals.length - 1]);
+    private static String readScript(String fileName) {
+        try (Stream<String> lines = Files.lines(Path.of(fileName))) {
+            return lines.collect(Collectors.joining("\n"));
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading script file: " + fileName, e);
+        }
+    }
 
-        return arr;
+    private void addTableRow(String name, Object value) {
+        results.rowAdded(name, value); // passed by reference, formatting is up to the listener
     }
 
-    private Object[] formatFieldValues(Object value) {
-        if (value == null)
-            return new Object[0];
+    private Object getValue(BindField field) {
+        return field.get(model);
+    }
 
-        if (value instanceof double[]) {
-            return Arrays.stream((double[]) value)
-                    .mapToObj(Controller::formatNumber)
-                    .toArray();
+    private void setValue(BindField field, Object value) {
+        if (field.isSeries() && value instanceof double[] v)
+            value = Series.wrap(v); // PKB = new double[LL] in a script
+        try {
+            field.set(model, value);
+        } catch (ClassCastException | NullPointerException e) {
+            throw new RuntimeException("Failed to set field's value: " + field.name(), e);
         }
+    }
 
-        if (value instanceof int[]) {
-            return Arrays.stream((int[]) value)
-                    .mapToObj(Controller::formatNumber)
-                    .toArray();
+    // reports only the rows that changed since they were last reported and appends new script vars
+    private void refreshTable() {
+        int row = 0;
+        for (BindField field : bindFields) {
+            if (!field.name().equals("LL"))
+                refreshTableRow(row++, field.name(), getValue(field));
+            else
+                shown.put(field.name(), getValue(field));
         }
-
-        return new String[]{value.toString()};
+        for (Map.Entry<String, Object> var : scriptVars.entrySet())
+            refreshTableRow(row++, var.getKey(), var.getValue());
     }
 
-    private static String formatNumber(double number) {
-        DecimalFormatSymbols symbols = new DecimalFormatSymbols();
-        symbols.setDecimalSeparator(',');
-        symbols.setGroupingSeparator(' ');
-
-        // adjust the number of decimal places depending on the value range
-        String pattern;
-        if (number < 1) {
-            pattern = "#,##0.###";
-        } else if (number < 1000) {
-            pattern = "#,##0.##";
-        } else {
-            pattern = "#,##0.#";
+    private void refreshTableRow(int row, String name, Object value) {
+        if (!shown.contains(name)) {
+            addTableRow(name, value);
+            shown.put(name, value);
+            return;
         }
 
-        DecimalFormat decFormat = new DecimalFormat(pattern, symbols);
-        String formattedNumber = decFormat.format(number);
+        // the row references the value, so it only needs a new reference or a repaint
+        if (shown.mismatch(name, value) < 0 && shown.isSameReference(name, value))
+            return;
 
-        if (formattedNumber.endsWith(symbols.getDecimalSeparator() + "0"))
-            formattedNumber = formattedNumber.substring(0, formattedNumber.length() - 2);
-
-        return formattedNumber;
+        results.rowChanged(row, name, value);
+        shown.put(name, value);
     }
 
-    private void addTableRow(String name, Object value) {
-        Object[] data = formatFieldValues(value);
-        Object[] rowData = new Object[data.length+1];
-        rowData[0] = name;
-        System.arraycopy(data, 0, rowData, 1, data.length);
-        GUI.tableModel.addRow(rowData);
+    private void addBindFieldsIntoTable() {
+        List<BindField> fields = bindFields.list();
+        for (int i = 0; i < fields.size(); i++) {
+            if (!fields.get(i).name().equals("LL"))
+                addTableRow(fields.get(i).name(), getValue(fields.get(i)));
+        }
     }
 
-    private Object getValue(Field field) {
-        try {
-            return field.get(model);
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException("Failed to get field's value: " + field.getName(), e);
+    // script vars keep the values a buffer has now, as they keep the old arrays when new ones are bound
+    private void detachFromBuffers() {
+        if (scriptVars.isEmpty())
+            return;
+        for (Map.Entry<String, Object> var : scriptVars.entrySet()) {
+            if (!buffers.owns(var.getValue()))
+                continue;
+            Object copy = var.getValue() instanceof Series v ?
+                Series.wrap(v.toArray()) : ((double[]) var.getValue()).clone();
+            var.setValue(copy);
+            bindings.put(var.getKey(), copy);
         }
     }
 
-    private void setValue(Field field, Object value) {
+    private void writeResultsAsTsv(TsvWriter w) throws IOException {
+        StageTrace trace = trace(Stage.EXPORT);
         try {
-            field.set(model, value);
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException("Failed to set field's value: " + field.getName(), e);
+            w.row("LATA", lata);
+
+            for (BindField field : bindFields) {
+                if (!field.name().equals("LL"))
+                    w.row(field.name(), getValue(field));
+            }
+            for (Map.Entry<String, Object> var : scriptVars.entrySet())
+                w.row(var.getKey(), var.getValue());
+
+            w.flush();
+        } catch (Throwable e) {
+            trace.failed();
+            throw e;
+        } finally {
+            trace.bytes(w.written()).end(); // what was written before a failure as well
         }
     }
 
-    private void addBindFieldsIntoTable() {
-        bindFields.stream()
-            .filter(field -> !field.getName().equals("LL"))
-            .forEach((field) -> addTableRow(field.getName(), getValue(field)));
+    private StageTrace trace(Stage stage) {
+        return StageTrace.begin(stage)
+            .model(model.getClass().getName())
+            .data(dataFile)
+            .series(bindFields.list().size() + scriptVars.size())
+            .years(lata != null ? lata.length : 0);
     }
 
-    // For console log
-    private String fieldValueToStr(Object value) {
-        if (value == null)
-            return "NULL";
-
-        if (value instanceof double[])
-            return Arrays.stream((double[]) value)
-                    .mapToObj(Double::toString)
-                    .collect(Collectors.joining("\t"));
+    // what a static script gets declared: @Bind fields by their type, script vars by their value
+    private Map<String, Class<?>> variableTypes() {
+        Map<String, Class<?>> types = new LinkedHashMap<>();
+        bindFields.forEach(field -> types.put(field.name(), field.type()));
+        scriptVars.forEach((name, value) -> types.putIfAbsent(name, StaticScripts.typeOf(value)));
+        return types;
+    }
 
-        return value.toString();
+    // double[] and Series @Bind fields, as bound
+    private long boundBytes() {
+        return (long) boundSeries * lata.length * Double.BYTES;
     }
 
-    private void appendRow(StringBuilder sb, String name, String values) {
-        sb.append(name).append('\t').append(values).append('\n');
+    private static void putSeries(Map<String, MemorySegment> series, String name, Object value) {
+        if (value instanceof double[] v)
+            series.put(name, MemorySegment.ofArray(v));
+        else if (value instanceof Series v)
+            series.put(name, v.segment());
+        else if (value instanceof int[] v)
+            series.put(name, MemorySegment.ofArray(Arrays.stream(v).asDoubleStream().toArray()));
     }
 }
\ No newline at end of file
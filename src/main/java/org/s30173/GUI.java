@@ -1,46 +1,90 @@
 package org.s30173;
 
+import org.s30173.batch.MonteCarlo;
+import org.s30173.helpers.DatasetCache;
+import org.s30173.helpers.EnginePool;
+import org.s30173.helpers.ModelIndex;
+import org.s30173.jobs.Job;
+import org.s30173.jobs.JobService;
+import org.s30173.metrics.Metrics;
+
 import javax.script.ScriptException;
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.DefaultTableColumnModel;
 import javax.swing.table.JTableHeader;
+import javax.swing.table.TableColumn;
+import javax.swing.table.TableColumnModel;
+import javax.swing.table.TableModel;
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
 
+import static org.s30173.helpers.Config.*;
 import static org.s30173.helpers.Manager.*;
 
 public class GUI {
     private static final DefaultListModel<String> modelsListModel = new DefaultListModel<>();
     private static final DefaultListModel<String> dataListModel = new DefaultListModel<>();
-    public static final DefaultTableModel tableModel = new DefaultTableModel() {
-        @Override
-        public boolean isCellEditable(int row, int column) {
-            return false;
-        }
-    };
 
     private static final JList<String> modelList = new JList<>(modelsListModel);
     private static final JList<String> dataList = new JList<>(dataListModel);
-    public static final JTable viewTable = new JTable(tableModel);
+    public static final JTable viewTable = new JTable(new SeriesTableModel()) {
+        {
+            setAutoCreateColumnsFromModel(false);
+        }
+
+        // one column model per LATA change instead of JTable's remove-and-add of every column
+        @Override
+        public void tableChanged(TableModelEvent e) {
+            if (e == null || e.getFirstRow() == TableModelEvent.HEADER_ROW)
+                setColumnModel(createColumns(getModel()));
+            super.tableChanged(e);
+        }
+    };
 
     private static Controller controller;
+    private static String modelValue; // what the controller was created from, for re-runs
+    private static String dataValue;
+    private static final List<ScriptRun> scriptsRun = new ArrayList<>(); // applied to it so far
+
+    private static JCheckBox autoRerunBox;
+    private static JCheckBox staticScriptsBox;
     private static JButton scriptFileBtn;
     private static JButton adHocScriptButton;
+    private static JButton monteCarloBtn;
+    private static JLabel statusLabel;
+    private static JButton cancelBtn;
 
-    private static final JFrame frame = new JFrame(FRAME_TITLE);
+    // model and script runs happen here, off the EDT; jobs of one controller run in order
+    private static final JobService jobs = new JobService(SwingUtilities::invokeLater)
+            .onProgress(_ -> updateStatus());
+
+    private static JFrame frame; // created in initializeGUI, so the class can be loaded headless
+
+    private interface ScriptRun {
+        void run(Controller c) throws ScriptException;
+    }
 
     public static void main(String[] args) {
+        Metrics.enable(); // stages are user actions here, timing them is free
+        EnginePool.shared().warmUp();
         SwingUtilities.invokeLater(GUI::initializeGUI);
         loadModelsAndDataIntoLists();
+        watchDataDir();
     }
 
 
     // ----- GUI -----
     private static void initializeGUI() {
+        frame = new JFrame(FRAME_TITLE);
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setSize(FRAME_SIZE);
         frame.setMinimumSize(FRAME_MIN_SIZE);
@@ -69,9 +113,17 @@ public class GUI {
         styleButton(runModelBtn);
         runModelBtn.addActionListener(_ -> runModelClickAction());
 
-        JPanel rmp = new JPanel(new FlowLayout(FlowLayout.CENTER, 0, 5));
+        autoRerunBox = new JCheckBox("Re-run on data change");
+        autoRerunBox.setFocusable(false);
+        autoRerunBox.setOpaque(false);
+        autoRerunBox.setFont(PLAIN_M_FONT);
+        autoRerunBox.setForeground(FG_COLOR);
+
+        JPanel rmp = new JPanel(new GridLayout(2, 1, 0, 5));
         rmp.setOpaque(false);
+        rmp.setBorder(BorderFactory.createEmptyBorder(5, 0, 5, 0));
         rmp.add(runModelBtn);
+        rmp.add(autoRerunBox);
 
         JPanel gapPanel = new JPanel();
         gapPanel.setOpaque(false);
@@ -96,6 +148,7 @@ public class GUI {
         viewTable.setRowHeight(22);
         viewTable.setGridColor(Color.BLACK);
         viewTable.setIntercellSpacing(new Dimension(10,0));
+        viewTable.setAutoResizeMode(JTable.AUTO_RESIZE_OFF); // scroll horizontally through long horizons
 
         JTableHeader header = viewTable.getTableHeader();
         header.setBackground(TABLE_HEADER_COLOR);
@@ -121,6 +174,36 @@ public class GUI {
         adHocScriptButton.setVisible(false);
         bp.add(adHocScriptButton);
 
+        monteCarloBtn = new JButton("Monte Carlo");
+        styleButton(monteCarloBtn);
+        monteCarloBtn.addActionListener(_ -> monteCarloClickAction());
+        monteCarloBtn.setVisible(false);
+        bp.add(monteCarloBtn);
+
+        staticScriptsBox = new JCheckBox("@CompileStatic");
+        staticScriptsBox.setToolTipText("Compile scripts statically: faster loops, but every variable needs a type");
+        staticScriptsBox.setFocusable(false);
+        staticScriptsBox.setOpaque(false);
+        staticScriptsBox.setFont(PLAIN_M_FONT);
+        staticScriptsBox.setForeground(FG_COLOR);
+        bp.add(staticScriptsBox);
+
+        statusLabel = new JLabel();
+        statusLabel.setFont(PLAIN_M_FONT);
+        statusLabel.setForeground(FG_COLOR);
+        bp.add(statusLabel);
+
+        cancelBtn = new JButton("Cancel");
+        styleButton(cancelBtn);
+        cancelBtn.addActionListener(_ -> jobs.cancel(controller));
+        cancelBtn.setVisible(false);
+        bp.add(cancelBtn);
+
+        JButton metricsBtn = new JButton("Metrics");
+        styleButton(metricsBtn);
+        metricsBtn.addActionListener(_ -> showMetrics());
+        bp.add(metricsBtn);
+
         cp.add(scroll, BorderLayout.CENTER);
         cp.add(bp, BorderLayout.SOUTH);
 
@@ -170,7 +253,8 @@ public class GUI {
     private static void scriptFileButtonClickAction() {
         JFileChooser fc = new JFileChooser();
         fc.setFileSelectionMode(JFileChooser.FILES_ONLY);
-        fc.setDialogTitle("Choose script file");
+        fc.setMultiSelectionEnabled(true);
+        fc.setDialogTitle("Choose script files");
         fc.setCurrentDirectory(new File(SCRIPTS_DIR));
 
         int r = fc.showOpenDialog(frame);
@@ -202,10 +286,7 @@ public class GUI {
 
         JButton runBtn = new JButton("Run");
         styleButton(runBtn);
-        runBtn.addActionListener(_ -> {
-            if(runAdhocScriptClickAction(sa))
-                sd.dispose();
-        });
+        runBtn.addActionListener(_ -> runAdhocScriptClickAction(sa, sd));
         dbp.add(runBtn);
 
         JButton closeBtn = new JButton("Close");
@@ -218,26 +299,55 @@ public class GUI {
         sd.setVisible(true);
     }
 
-    public static void addColumns(String[] columnNames) {
-        tableModel.setNumRows(0);
-        tableModel.setColumnCount(0);
+    private static TableColumnModel createColumns(TableModel tm) {
+        TableColumnModel cm = new DefaultTableColumnModel();
+        for (int i = 0; i < tm.getColumnCount(); i++) {
+            TableColumn c = new TableColumn(i, COLUMN_WIDTH);
+            c.setHeaderValue(tm.getColumnName(i));
+            cm.addColumn(c);
+        }
+        return cm;
+    }
+
+    private static void updateStatus() {
+        List<Job<?>> running = jobs.active(controller);
+        statusLabel.setText(running.isEmpty() ? "" : running.getFirst().toString());
+        cancelBtn.setVisible(!running.isEmpty());
+    }
+
+    private static void showMetrics() {
+        JTextArea ta = new JTextArea(Metrics.report());
+        ta.setEditable(false);
+        ta.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 13));
+        ta.setBackground(BG_COLOR2);
+        ta.setForeground(FG_COLOR);
+        JOptionPane.showMessageDialog(frame, new JScrollPane(ta), "Metrics", JOptionPane.PLAIN_MESSAGE);
+    }
 
-        tableModel.addColumn("");
-        for (String s : columnNames)
-            tableModel.addColumn(s);
+    private static void showError(String message, Throwable e) {
+        if (e instanceof CancellationException)
+            return;
+        JOptionPane.showMessageDialog(frame, message, "Error", JOptionPane.ERROR_MESSAGE);
     }
 
 
     // ----- Logic -----
     private static void loadModelsAndDataIntoLists() {
         try {
-            DirectoryStream<Path> modelsStream = Files.newDirectoryStream(Path.of(MODELS_DIR));
-            modelsStream.forEach(file -> {
-                String fileName = file.getFileName().toString();
-                String fileNameNoExtension = fileName.substring(0, fileName.lastIndexOf("."));
-                modelsListModel.addElement(fileNameNoExtension);
-            });
-            modelsStream.close();
+            // models from the build-time index, the source directory only when running without it
+            ModelIndex.modelClassNames().stream()
+                .filter(name -> name.startsWith(MODELS_PACKAGE) && !name.substring(MODELS_PACKAGE.length()).matches(".*[.$].*"))
+                .forEach(name -> modelsListModel.addElement(name.substring(MODELS_PACKAGE.length())));
+
+            if (modelsListModel.isEmpty()) {
+                DirectoryStream<Path> modelsStream = Files.newDirectoryStream(Path.of(MODELS_DIR));
+                modelsStream.forEach(file -> {
+                    String fileName = file.getFileName().toString();
+                    String fileNameNoExtension = fileName.substring(0, fileName.lastIndexOf("."));
+                    modelsListModel.addElement(fileNameNoExtension);
+                });
+                modelsStream.close();
+            }
 
             DirectoryStream<Path> dataStream = Files.newDirectoryStream(Path.of(DATA_DIR));
             dataStream.forEach(file -> dataListModel.addElement(file.getFileName().toString()));
@@ -248,42 +358,141 @@ public class GUI {
     }
 
     private static void runModelClickAction() {
-        String modelValue = modelList.getSelectedValue();
-        String dataValue = dataList.getSelectedValue();
+        String model = modelList.getSelectedValue();
+        String data = dataList.getSelectedValue();
 
-        if (modelValue == null || dataValue == null) {
+        if (model == null || data == null) {
             JOptionPane.showMessageDialog(frame,
             "Choose model and data first", "Error", JOptionPane.ERROR_MESSAGE);
             return;
         }
 
-        controller = new Controller(MODELS_PACKAGE + modelValue);
-        controller
-            .readDataFrom(DATA_DIR + dataValue)
-            .runModel();
+        runModel(model, data, List.of());
+    }
 
-        frame.setTitle(FRAME_TITLE + " (" + modelValue + " - " + dataValue + ")");
-        scriptFileBtn.setVisible(true);
-        adHocScriptButton.setVisible(true);
+    // runs the model on a new controller, then replays the given scripts on it
+    private static void runModel(String model, String data, List<ScriptRun> replay) {
+        // the new run gets its own table; a previous run may still finish in the background, its
+        // controller (and the series storage it holds) is closed after the last job of its lane
+        Controller previous = controller;
+        if (previous != null)
+            jobs.submit(previous, "Closing " + modelValue, _ -> {
+                previous.close();
+                return previous;
+            }, (_, _) -> {});
+
+        SeriesTableModel table = new SeriesTableModel(true);
+        controller = new Controller(MODELS_PACKAGE + model, table);
+        modelValue = model;
+        dataValue = data;
+        scriptsRun.clear();
+        viewTable.setModel(table);
+        frame.setTitle(FRAME_TITLE + " (" + model + " - " + data + ")");
+        scriptFileBtn.setVisible(false);
+        adHocScriptButton.setVisible(false);
+        monteCarloBtn.setVisible(false);
+
+        Controller c = controller;
+        jobs.submit(c, "Running " + model, job -> {
+            job.stage("Reading " + data);
+            c.readDataFrom(DATA_DIR + data);
+            job.stage("Running " + model);
+            c.runModel();
+            for (ScriptRun script : replay) {
+                job.stage("Re-running scripts");
+                script.run(c);
+            }
+            return c;
+        }, (_, e) -> {
+            if (e != null) {
+                showError("Error running model: " + e.getMessage(), e);
+            } else if (c == controller) {
+                scriptsRun.addAll(replay);
+                scriptFileBtn.setVisible(true);
+                adHocScriptButton.setVisible(true);
+                monteCarloBtn.setVisible(true);
+            }
+        });
+        updateStatus();
     }
 
+    // several files are run as one batch, see Controller.runScripts
     private static void runScriptFromFileClickAction(JFileChooser fc) {
+        File[] files = fc.getSelectedFiles();
+        if (files.length <= 1) {
+            String fileName = fc.getSelectedFile().getAbsolutePath();
+            runScript("Running " + fc.getSelectedFile().getName(), c -> c.runScriptFromFile(fileName),
+                "Invalid groovy script in the file", () -> {});
+            return;
+        }
+
+        List<String> fileNames = Arrays.stream(files).map(File::getAbsolutePath).toList();
+        runScript("Running " + files.length + " scripts", c -> c.runScriptsFromFiles(fileNames),
+            "Invalid groovy script in the files", () -> {});
+    }
+
+    // percentile rows of the model under varied growth rates, replayed like a script on re-runs
+    private static void monteCarloClickAction() {
+        String spec = JOptionPane.showInputDialog(frame, "Draws and distributions of the input series",
+            MONTE_CARLO_SPEC);
+        if (spec == null || spec.isBlank())
+            return;
+
+        MonteCarlo mc;
         try {
-            controller.runScriptFromFile(fc.getSelectedFile().getAbsolutePath());
-        } catch (ScriptException e) {
-            JOptionPane.showMessageDialog(frame,
-            "Invalid groovy script in the file", "Error", JOptionPane.ERROR_MESSAGE);
+            mc = MonteCarlo.parse(spec);
+        } catch (IllegalArgumentException e) {
+            showError("Invalid Monte Carlo spec:\n" + e.getMessage(), e);
+            return;
         }
+        runScript("Monte Carlo", c -> c.runMonteCarlo(mc), "Invalid Monte Carlo spec", () -> {});
+    }
+
+    private static void runAdhocScriptClickAction(JTextArea sa, JDialog sd) {
+        String script = sa.getText();
+        runScript("Running ad hoc script", c -> c.runScript(script), "Invalid groovy script", sd::dispose);
+    }
+
+    private static void runScript(String name, ScriptRun run, String invalidMessage, Runnable onSuccess) {
+        Controller c = controller;
+        boolean compileStatic = staticScriptsBox.isSelected();
+        ScriptRun script = sc -> run.run(sc.compileStatic(compileStatic)); // replayed in the same mode
+        jobs.submit(c, name, _ -> {
+            script.run(c);
+            return c;
+        }, (_, e) -> {
+            if (e == null) {
+                if (c == controller)
+                    scriptsRun.add(script);
+                onSuccess.run();
+            } else if (e instanceof ScriptException) {
+                showError(invalidMessage + ":\n" + e.getMessage(), e);
+            } else {
+                showError("Error running script: " + e.getMessage(), e);
+            }
+        });
+        updateStatus();
     }
 
-    private static boolean runAdhocScriptClickAction(JTextArea sa) {
+    private static void watchDataDir() {
         try {
-            controller.runScript(sa.getText());
-            return true;
-        } catch (ScriptException e) {
-            JOptionPane.showMessageDialog(frame,
-            "Invalid groovy script", "Error", JOptionPane.ERROR_MESSAGE);
-            return false;
+            DatasetCache.watch(Path.of(DATA_DIR), file -> SwingUtilities.invokeLater(() -> dataChanged(file)));
+        } catch (IOException e) {
+            throw new RuntimeException("Error watching data directory: " + DATA_DIR, e);
         }
     }
+
+    // on the EDT; file is the data directory itself if the watcher lost track
+    private static void dataChanged(Path file) {
+        String name = file.getFileName().toString();
+        boolean listed = dataListModel.contains(name);
+        if (Files.isRegularFile(file) && !listed)
+            dataListModel.addElement(name);
+        else if (!Files.exists(file) && listed)
+            dataListModel.removeElement(name);
+
+        boolean affected = name.equals(dataValue) || file.equals(Path.of(DATA_DIR).toAbsolutePath().normalize());
+        if (autoRerunBox.isSelected() && controller != null && affected && Files.isRegularFile(Path.of(DATA_DIR, dataValue)))
+            runModel(modelValue, dataValue, List.copyOf(scriptsRun));
+    }
 }
\ No newline at end of file
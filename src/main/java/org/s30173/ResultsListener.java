@@ -0,0 +1,21 @@
+package org.s30173;
+
+/**
+ * Receives the result rows of a {@link Controller}: the {@code @Bind} series of the model followed by
+ * the script variables. Values are passed by reference, a row whose array changed in place is
+ * reported again through {@link #rowChanged}.
+ */
+public interface ResultsListener {
+    ResultsListener NONE = new ResultsListener() {
+        @Override public void columns(String[] lata) {}
+        @Override public void rowAdded(String name, Object value) {}
+        @Override public void rowChanged(int row, String name, Object value) {}
+    };
+
+    // a new run: the LATA years, all previous rows are gone
+    void columns(String[] lata);
+
+    void rowAdded(String name, Object value);
+
+    void rowChanged(int row, String name, Object value);
+}
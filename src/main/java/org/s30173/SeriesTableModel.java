@@ -0,0 +1,228 @@
+package org.s30173;
+
+import org.s30173.helpers.NumberFormatter;
+import org.s30173.helpers.Series;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Results table backed directly by the series: a row keeps a reference to its {@code double[]},
+ * {@code int[]} or script value and cells are formatted only when the table asks for them,
+ * i.e. for the visible part. Changes are published as row events, never as a rebuilt table.
+ * <p>
+ * A model created with {@code publishOnEdt} may be changed from any thread: changes are queued and
+ * applied on the Event Dispatch Thread in batches, with one inserted and one updated event per range
+ * of rows. As the job that published a row goes on changing its arrays in place (e.g. a re-run into
+ * reused buffers), the rows of a batch are copied when it's applied, into the row's previous copy when
+ * it fits; a row caught in the middle of such a change is reported again, and copied again, when the
+ * job is done with it.
+ */
+@SuppressWarnings("serial") // Swing models are serializable, this one is never serialized
+public class SeriesTableModel extends AbstractTableModel implements ResultsListener {
+    private String[] columns = new String[0];
+    private final List<String> names = new ArrayList<>();
+    private final List<Object> values = new ArrayList<>();
+
+    private final boolean publishOnEdt;
+    private final List<Change> pending = new ArrayList<>(); // guarded by itself
+
+    private enum Kind { COLUMNS, ADD, SET, CLEAR }
+
+    private record Change(Kind kind, int row, String name, Object value) {}
+
+    public SeriesTableModel() {
+        this(false);
+    }
+
+    public SeriesTableModel(boolean publishOnEdt) {
+        this.publishOnEdt = publishOnEdt;
+    }
+
+    // LATA years become the columns, all rows are removed
+    public void setColumns(String[] lata) {
+        change(new Change(Kind.COLUMNS, -1, null, lata.clone()));
+    }
+
+    public void addRow(String name, Object value) {
+        change(new Change(Kind.ADD, -1, name, value));
+    }
+
+    public void setRow(int row, String name, Object value) {
+        change(new Change(Kind.SET, row, name, value));
+    }
+
+    @Override
+    public void columns(String[] lata) {
+        setColumns(lata);
+    }
+
+    @Override
+    public void rowAdded(String name, Object value) {
+        addRow(name, value);
+    }
+
+    @Override
+    public void rowChanged(int row, String name, Object value) {
+        setRow(row, name, value);
+    }
+
+    public void clearRows() {
+        change(new Change(Kind.CLEAR, -1, null, null));
+    }
+
+    @Override
+    public int getRowCount() {
+        return names.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length + 1;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return column == 0 ? "" : columns[column - 1];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (column == 0)
+            return names.get(row);
+
+        Object value = values.get(row);
+        int i = column - 1;
+
+        if (value == null)
+            return null;
+        if (value instanceof double[] v)
+            return i < v.length ? NumberFormatter.format(v[i]) : null;
+        if (value instanceof int[] v)
+            return i < v.length ? NumberFormatter.format(v[i]) : null;
+        if (value instanceof Series v)
+            return i < v.length() ? NumberFormatter.format(v.get(i)) : null;
+
+        return i == 0 ? value.toString() : null;
+    }
+
+
+    // Helpers
+    private void change(Change change) {
+        if (!publishOnEdt) {
+            apply(change);
+            switch (change.kind()) {
+                case COLUMNS -> fireTableStructureChanged();
+                case ADD -> fireTableRowsInserted(names.size() - 1, names.size() - 1);
+                case SET -> fireTableRowsUpdated(change.row(), change.row());
+                case CLEAR -> fireTableDataChanged();
+            }
+            return;
+        }
+
+        synchronized (pending) {
+            pending.add(change);
+            if (pending.size() == 1)
+                SwingUtilities.invokeLater(this::flush);
+        }
+    }
+
+    private void apply(Change change) {
+        switch (change.kind()) {
+            case COLUMNS -> {
+                columns = (String[]) change.value();
+                names.clear();
+                values.clear();
+            }
+            case ADD -> {
+                names.add(change.name());
+                values.add(change.value());
+            }
+            case SET -> {
+                names.set(change.row(), change.name());
+                values.set(change.row(), change.value());
+            }
+            case CLEAR -> {
+                names.clear();
+                values.clear();
+            }
+        }
+    }
+
+    // on the EDT: applies the queued changes, copies the rows they touched and fires one event per range
+    private void flush() {
+        List<Change> batch;
+        synchronized (pending) {
+            batch = new ArrayList<>(pending);
+            pending.clear();
+        }
+
+        boolean structure = false;
+        boolean cleared = false;
+        int rowsBefore = names.size();
+        BitSet touched = new BitSet();
+        List<Object> previous = new ArrayList<>(values); // copies of the rows, reused where they fit
+
+        for (Change change : batch) {
+            switch (change.kind()) {
+                case COLUMNS -> structure = true;
+                case CLEAR -> cleared = true;
+                case ADD -> touched.set(names.size());
+                case SET -> touched.set(change.row());
+            }
+            if (change.kind() == Kind.COLUMNS || change.kind() == Kind.CLEAR) {
+                rowsBefore = 0;
+                touched.clear();
+                previous.clear();
+            }
+            apply(change);
+        }
+
+        for (int row = touched.nextSetBit(0); row >= 0; row = touched.nextSetBit(row + 1))
+            values.set(row, snapshot(values.get(row), row < previous.size() ? previous.get(row) : null));
+
+        if (structure) {
+            fireTableStructureChanged();
+        } else if (cleared) {
+            fireTableDataChanged();
+        } else {
+            // rows are only appended, so what's beyond the old row count was inserted
+            int limit = Math.min(rowsBefore, names.size());
+            for (int from = touched.nextSetBit(0); from >= 0 && from < limit; ) {
+                int to = Math.min(touched.nextClearBit(from), limit);
+                fireTableRowsUpdated(from, to - 1);
+                from = touched.nextSetBit(to);
+            }
+            if (names.size() > rowsBefore)
+                fireTableRowsInserted(rowsBefore, names.size() - 1);
+        }
+    }
+
+    // numbers are copied, into reuse when it's an array of the same type and length, Series as double[];
+    // other values as their text
+    private static Object snapshot(Object value, Object reuse) {
+        if (value == null || value instanceof String)
+            return value;
+        if (value instanceof double[] v) {
+            double[] copy = reuse instanceof double[] r && r.length == v.length && r != v ? r : new double[v.length];
+            System.arraycopy(v, 0, copy, 0, v.length);
+            return copy;
+        }
+        if (value instanceof int[] v) {
+            int[] copy = reuse instanceof int[] r && r.length == v.length && r != v ? r : new int[v.length];
+            System.arraycopy(v, 0, copy, 0, v.length);
+            return copy;
+        }
+        if (value instanceof Series v) {
+            double[] copy = reuse instanceof double[] r && r.length == v.length() ? r : new double[v.length()];
+            MemorySegment.copy(v.segment(), ValueLayout.JAVA_DOUBLE, 0, copy, 0, copy.length);
+            return copy;
+        }
+        return value.toString();
+    }
+}
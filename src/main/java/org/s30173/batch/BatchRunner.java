@@ -0,0 +1,127 @@
+package org.s30173.batch;
+
+import org.s30173.helpers.BindField;
+import org.s30173.helpers.BindFields;
+import org.s30173.helpers.DatasetCache;
+import org.s30173.helpers.Model;
+import org.s30173.helpers.SeriesFile;
+import org.s30173.helpers.SeriesStorage;
+
+import java.lang.foreign.MemorySegment;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Runs many scenarios of one model class concurrently on virtual threads. Every scenario gets its own
+ * model instance (models keep their state in fields), at most {@code parallelism} run at a time and
+ * each result is handed to the sink as soon as it completes, so nothing is retained by the runner.
+ * Data files come from the {@link DatasetCache}: one shared by several scenarios is read once while it
+ * stays cached, and the cache's byte bound holds however many files a batch goes through.
+ */
+public class BatchRunner {
+    private final Class<? extends Model> modelClass;
+    private final BindFields bindFields;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    public BatchRunner(Class<? extends Model> modelClass) {
+        this.modelClass = modelClass;
+        this.bindFields = BindFields.of(modelClass);
+    }
+
+    public BatchRunner(String modelClassName) {
+        this(loadModelClass(modelClassName));
+    }
+
+    public BatchRunner parallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Runs all scenarios and blocks until the last result was delivered. The sink is called from
+     * the worker threads, concurrently, so it has to be thread-safe. Failed scenarios are reported
+     * to the sink as well; an exception thrown by the sink aborts the batch once running tasks finish.
+     *
+     * @return number of scenarios run
+     */
+    public long run(Iterable<Scenario> scenarios, Consumer<ScenarioResult> sink) throws InterruptedException {
+        Semaphore permits = new Semaphore(parallelism);
+        AtomicReference<RuntimeException> sinkError = new AtomicReference<>();
+        long count = 0;
+
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Scenario scenario : scenarios) {
+                permits.acquire();
+                if (sinkError.get() != null) {
+                    permits.release();
+                    break;
+                }
+
+                count++;
+                pool.execute(() -> {
+                    try {
+                        sink.accept(run(scenario));
+                    } catch (RuntimeException e) {
+                        sinkError.compareAndSet(null, e);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+
+        if (sinkError.get() != null)
+            throw new RuntimeException("Result sink failed", sinkError.get());
+        return count;
+    }
+
+    // Series fields are on the heap and come back as double[], like double[] fields
+    public ScenarioResult run(Scenario scenario) {
+        try (SeriesStorage.Scope scope = SeriesStorage.HEAP.open()) {
+            SeriesFile.Snapshot data = DatasetCache.load(scenario.dataFile());
+            if (data.lata() == null)
+                throw new IllegalStateException("No LATA header in data file: " + scenario.dataFile());
+
+            Map<String, MemorySegment> series = data.series();
+            if (!scenario.overrides().isEmpty()) {
+                series = new HashMap<>(series);
+                for (Map.Entry<String, double[]> override : scenario.overrides().entrySet())
+                    series.put(override.getKey(), MemorySegment.ofArray(override.getValue()));
+            }
+
+            Model model = modelClass.getDeclaredConstructor().newInstance();
+            bindFields.bindSegments(model, data.lata().length, series, scope);
+            model.run();
+
+            Map<String, double[]> results = new LinkedHashMap<>();
+            for (BindField field : bindFields) {
+                if (field.isDoubles())
+                    results.put(field.name(), field.getDoubles(model));
+                else if (field.isSeries())
+                    results.put(field.name(), field.getSeries(model).toArray());
+            }
+            return new ScenarioResult(scenario, data.lata(), results, null);
+        } catch (Exception e) {
+            return new ScenarioResult(scenario, null, Map.of(), e);
+        }
+    }
+
+
+    // Helpers
+
+    private static Class<? extends Model> loadModelClass(String modelClassName) {
+        try {
+            return Class.forName(modelClassName).asSubclass(Model.class);
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException("Error loading model class: " + modelClassName, e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.s30173.batch;
+
+import java.util.SplittableRandom;
+
+/**
+ * How {@link MonteCarlo} draws a value of an input series, given the value in the data ({@code base}).
+ * Every year of a varied series is drawn independently.
+ */
+@FunctionalInterface
+public interface Distribution {
+    double sample(SplittableRandom rng, double base);
+
+    // the data value plus normal noise, e.g. normal(0.01) around a growth rate of 1.03
+    static Distribution normal(double sd) {
+        if (!(sd >= 0))
+            throw new IllegalArgumentException("standard deviation must not be negative: " + sd);
+        return (rng, base) -> base + sd * rng.nextGaussian();
+    }
+
+    static Distribution normal(double mean, double sd) {
+        if (!(sd >= 0))
+            throw new IllegalArgumentException("standard deviation must not be negative: " + sd);
+        return (rng, base) -> mean + sd * rng.nextGaussian();
+    }
+
+    static Distribution uniform(double low, double high) {
+        if (!(low <= high))
+            throw new IllegalArgumentException("low must not be above high: " + low + ", " + high);
+        return (rng, base) -> low + (high - low) * rng.nextDouble();
+    }
+
+    static Distribution triangular(double low, double mode, double high) {
+        if (!(low <= mode && mode <= high && low < high))
+            throw new IllegalArgumentException("expected low <= mode <= high: " + low + ", " + mode + ", " + high);
+        double split = (mode - low) / (high - low);
+        return (rng, base) -> {
+            double u = rng.nextDouble();
+            return u < split ? low + Math.sqrt(u * (high - low) * (mode - low))
+                             : high - Math.sqrt((1 - u) * (high - low) * (high - mode));
+        };
+    }
+
+    /**
+     * {@code normal:sd} (around the data), {@code normal:mean:sd}, {@code uniform:low:high} or
+     * {@code triangular:low:mode:high}.
+     */
+    static Distribution parse(String spec) {
+        String[] parts = spec.split(":");
+        double[] p = new double[parts.length - 1];
+        try {
+            for (int i = 1; i < parts.length; i++)
+                p[i - 1] = Double.parseDouble(parts[i]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad number in distribution: " + spec);
+        }
+
+        return switch (parts[0] + "/" + p.length) {
+            case "normal/1" -> normal(p[0]);
+            case "normal/2" -> normal(p[0], p[1]);
+            case "uniform/2" -> uniform(p[0], p[1]);
+            case "triangular/3" -> triangular(p[0], p[1], p[2]);
+            default -> throw new IllegalArgumentException("Unknown distribution (normal:sd, normal:mean:sd, " +
+                "uniform:low:high, triangular:low:mode:high): " + spec);
+        };
+    }
+}
@@ -0,0 +1,172 @@
+package org.s30173.batch;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+
+/**
+ * Many {@code Model1} scenarios in structure-of-arrays form: every series is one {@code double[]} of
+ * {@code years * count} values laid out year by year ({@code [t * count + scenario]}), so a year of
+ * the recurrence is one contiguous step across all scenarios.
+ * <p>
+ * {@link #run()} evaluates the same recurrence as {@code Model1.run}, in the same operation order,
+ * so every scenario gives bit-identical results. It uses the Vector API when the
+ * {@code jdk.incubator.vector} module is present ({@code --add-modules jdk.incubator.vector})
+ * and a scalar loop otherwise. The vector kernel is compiled on its own, with that module (see pom.xml),
+ * so it is looked up at runtime rather than linked.
+ */
+public final class Model1Scenarios {
+    public static final String[] SERIES = {
+        "twKI", "twKS", "twINW", "twEKS", "twIMP", "KI", "KS", "INW", "EKS", "IMP", "PKB"
+    };
+
+    private static final MethodHandle VECTOR_KERNEL = vectorKernel(); // null: scalar
+    static final boolean VECTORIZED = VECTOR_KERNEL != null;
+
+    final int years;
+    final int count;
+    final double[] twKI, twKS, twINW, twEKS, twIMP;
+    final double[] KI, KS, INW, EKS, IMP, PKB;
+
+    public Model1Scenarios(int years, int count) {
+        if (years < 1 || count < 1)
+            throw new IllegalArgumentException("years and count must be positive: " + years + ", " + count);
+        if ((long) years * count > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("too many values: " + years + " * " + count);
+
+        this.years = years;
+        this.count = count;
+        int size = years * count;
+        twKI = new double[size];
+        twKS = new double[size];
+        twINW = new double[size];
+        twEKS = new double[size];
+        twIMP = new double[size];
+        KI = new double[size];
+        KS = new double[size];
+        INW = new double[size];
+        EKS = new double[size];
+        IMP = new double[size];
+        PKB = new double[size];
+    }
+
+    public int years() {
+        return years;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    // same rules as binding a data file: a missing series is zeros, a short one is extended with its last value
+    public Model1Scenarios set(int scenario, Map<String, double[]> data) {
+        for (String name : SERIES) {
+            if (!name.equals("PKB"))
+                set(scenario, name, data.get(name));
+        }
+        return this;
+    }
+
+    public Model1Scenarios set(int scenario, String series, double[] values) {
+        checkScenario(scenario);
+        double[] soa = series(series);
+        for (int t = 0; t < years; t++) {
+            double v;
+            if (values == null)
+                v = 0;
+            else if (t < values.length)
+                v = values[t];
+            else
+                v = values[values.length - 1];
+            soa[t * count + scenario] = v;
+        }
+        return this;
+    }
+
+    public double[] get(int scenario, String series) {
+        checkScenario(scenario);
+        double[] soa = series(series);
+        double[] res = new double[years];
+        for (int t = 0; t < years; t++)
+            res[t] = soa[t * count + scenario];
+        return res;
+    }
+
+    public void run() {
+        if (VECTORIZED)
+            runVector();
+        else
+            runScalar();
+    }
+
+    void runScalar() {
+        pkb(0, 0, count);
+        for (int t = 1; t < years; t++)
+            step(t * count, 0, count);
+    }
+
+    // year 0: PKB only, scenarios [from, to)
+    void pkb(int cur, int from, int to) {
+        for (int i = cur + from; i < cur + to; i++)
+            PKB[i] = KI[i] + KS[i] + INW[i] + EKS[i] - IMP[i];
+    }
+
+    // one year of the recurrence starting at offset cur, scenarios [from, to)
+    void step(int cur, int from, int to) {
+        for (int i = cur + from; i < cur + to; i++) {
+            int p = i - count;
+            KI[i] = twKI[i] * KI[p];
+            KS[i] = twKS[i] * KS[p];
+            INW[i] = twINW[i] * INW[p];
+            EKS[i] = twEKS[i] * EKS[p];
+            IMP[i] = twIMP[i] * IMP[p];
+            PKB[i] = KI[i] + KS[i] + INW[i] + EKS[i] - IMP[i];
+        }
+    }
+
+
+    // Helpers
+    private static MethodHandle vectorKernel() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty() || Boolean.getBoolean("utp.noVector"))
+            return null;
+        try {
+            return MethodHandles.lookup().findStatic(Class.forName("org.s30173.batch.Model1VectorKernel"), "run",
+                MethodType.methodType(void.class, Model1Scenarios.class));
+        } catch (ReflectiveOperationException e) {
+            return null; // built without the kernel
+        }
+    }
+
+    private void runVector() {
+        try {
+            VECTOR_KERNEL.invokeExact(this);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException("Error running the vector kernel", e);
+        }
+    }
+
+    private double[] series(String name) {
+        return switch (name) {
+            case "twKI" -> twKI;
+            case "twKS" -> twKS;
+            case "twINW" -> twINW;
+            case "twEKS" -> twEKS;
+            case "twIMP" -> twIMP;
+            case "KI" -> KI;
+            case "KS" -> KS;
+            case "INW" -> INW;
+            case "EKS" -> EKS;
+            case "IMP" -> IMP;
+            case "PKB" -> PKB;
+            default -> throw new IllegalArgumentException("Unknown Model1 series: " + name);
+        };
+    }
+
+    private void checkScenario(int scenario) {
+        if (scenario < 0 || scenario >= count)
+            throw new IndexOutOfBoundsException("scenario " + scenario + " of " + count);
+    }
+}
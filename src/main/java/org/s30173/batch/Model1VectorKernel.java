@@ -0,0 +1,48 @@
+package org.s30173.batch;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+// Only loaded when jdk.incubator.vector is present, see Model1Scenarios.VECTORIZED; compiled by the
+// compile-vector execution (pom.xml), the only one with the incubator module
+final class Model1VectorKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private Model1VectorKernel() {}
+
+    static void run(Model1Scenarios s) {
+        int n = s.count;
+        int bound = SPECIES.loopBound(n);
+        int lanes = SPECIES.length();
+
+        for (int i = 0; i < bound; i += lanes) {
+            load(s.KI, i).add(load(s.KS, i)).add(load(s.INW, i)).add(load(s.EKS, i)).sub(load(s.IMP, i))
+                .intoArray(s.PKB, i);
+        }
+        s.pkb(0, bound, n);
+
+        for (int t = 1; t < s.years; t++) {
+            int cur = t * n;
+            int prev = cur - n;
+            for (int i = 0; i < bound; i += lanes) {
+                DoubleVector ki = load(s.twKI, cur + i).mul(load(s.KI, prev + i));
+                DoubleVector ks = load(s.twKS, cur + i).mul(load(s.KS, prev + i));
+                DoubleVector inw = load(s.twINW, cur + i).mul(load(s.INW, prev + i));
+                DoubleVector eks = load(s.twEKS, cur + i).mul(load(s.EKS, prev + i));
+                DoubleVector imp = load(s.twIMP, cur + i).mul(load(s.IMP, prev + i));
+
+                ki.intoArray(s.KI, cur + i);
+                ks.intoArray(s.KS, cur + i);
+                inw.intoArray(s.INW, cur + i);
+                eks.intoArray(s.EKS, cur + i);
+                imp.intoArray(s.IMP, cur + i);
+                ki.add(ks).add(inw).add(eks).sub(imp).intoArray(s.PKB, cur + i);
+            }
+            s.step(cur, bound, n);
+        }
+    }
+
+    private static DoubleVector load(double[] a, int i) {
+        return DoubleVector.fromArray(SPECIES, a, i);
+    }
+}
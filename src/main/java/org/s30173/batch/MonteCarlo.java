@@ -0,0 +1,341 @@
+package org.s30173.batch;
+
+import org.s30173.helpers.BindField;
+import org.s30173.helpers.BindFields;
+import org.s30173.helpers.DatasetCache;
+import org.s30173.helpers.Model;
+import org.s30173.helpers.Series;
+import org.s30173.helpers.SeriesFile.Snapshot;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a model many times with input series drawn from {@link Distribution}s and aggregates every output
+ * series per year into {@link SeriesStats}: mean, variance and percentiles. No run is kept.
+ * <pre>
+ *   MonteCarlo.Result r = new MonteCarlo()
+ *       .vary("twKI", Distribution.normal(0.01))
+ *       .draws(100_000)
+ *       .run("org.s30173.models.Model1", Path.of("data1.txt"));
+ *   double[] p95 = r.series().get("PKB").percentile(95);
+ * </pre>
+ * Draws are split into chunks of {@link #CHUNK} that run in parallel on virtual threads, each with its own
+ * model instance and its own {@link SplittableRandom} split off the seed in chunk order. Chunks are merged
+ * in that order too, so a seed gives the same result at any parallelism.
+ */
+public class MonteCarlo {
+    public static int CHUNK = 1024;
+    public static double SKETCH_ACCURACY = 0.001; // percentiles within 0.1%
+
+    /** The statistics of every output series, and the percentiles {@link #rows} reports. */
+    public record Result(String[] lata, long draws, Map<String, SeriesStats> series, double[] percentiles) {
+        // "PKB_p5", "PKB_p50", ... per output and percentile, usable as script vars
+        public Map<String, double[]> rows() {
+            Map<String, double[]> rows = new LinkedHashMap<>();
+            series.forEach((name, stats) -> {
+                for (double p : percentiles)
+                    rows.put(name + "_p" + percentName(p), stats.percentile(p));
+            });
+            return rows;
+        }
+    }
+
+    private final Map<String, Distribution> varied = new LinkedHashMap<>();
+    private final Set<String> outputs = new LinkedHashSet<>();
+    private long draws = 10_000;
+    private long seed = 1;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private double[] percentiles = {5, 50, 95};
+
+    /**
+     * {@code series=distribution} (see {@link Distribution#parse}), {@code draws=N}, {@code seed=N} and
+     * {@code outputs=A,B} separated by whitespace or {@code ;}, e.g. {@code "draws=100000 twKI=normal:0.01"}.
+     */
+    public static MonteCarlo parse(String spec) {
+        MonteCarlo mc = new MonteCarlo();
+        for (String part : spec.trim().split("[\\s;]+")) {
+            int eq = part.indexOf('=');
+            if (eq <= 0)
+                throw new IllegalArgumentException("Expected name=value: " + part);
+            String name = part.substring(0, eq);
+            String value = part.substring(eq + 1);
+            try {
+                switch (name) {
+                    case "draws" -> mc.draws(Long.parseLong(value));
+                    case "seed" -> mc.seed(Long.parseLong(value));
+                    case "outputs" -> mc.outputs(value.split(","));
+                    default -> mc.vary(name, Distribution.parse(value));
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad number: " + part);
+            }
+        }
+        if (mc.varied.isEmpty())
+            throw new IllegalArgumentException("Nothing to vary: " + spec);
+        return mc;
+    }
+
+    public MonteCarlo vary(String series, Distribution distribution) {
+        varied.put(series, distribution);
+        return this;
+    }
+
+    // the series aggregated; by default the ones the model computes (changed by a run on the data as is)
+    public MonteCarlo outputs(String... series) {
+        outputs.addAll(Arrays.asList(series));
+        return this;
+    }
+
+    public MonteCarlo draws(long draws) {
+        if (draws < 1)
+            throw new IllegalArgumentException("draws must be positive: " + draws);
+        this.draws = draws;
+        return this;
+    }
+
+    public MonteCarlo seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public MonteCarlo parallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public MonteCarlo percentiles(double... percentiles) {
+        for (double p : percentiles) {
+            if (!(p >= 0 && p <= 100))
+                throw new IllegalArgumentException("percentile must be in [0, 100]: " + p);
+        }
+        this.percentiles = percentiles.clone();
+        return this;
+    }
+
+    public Result run(String modelClassName, Path dataFile) throws IOException {
+        Snapshot data = DatasetCache.load(dataFile);
+        if (data.lata() == null)
+            throw new IllegalStateException("No LATA header in data file: " + dataFile);
+        try {
+            return run(Class.forName(modelClassName).asSubclass(Model.class), data.lata(), data.series());
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException("Error loading model class: " + modelClassName, e);
+        }
+    }
+
+    public Result run(Class<? extends Model> modelClass, String[] lata, Map<String, MemorySegment> data) {
+        return run(modelClass, lata, data, data);
+    }
+
+    /**
+     * Every draw starts from {@code start}, e.g. the series of a controller as scripts left them, and
+     * varies them around their values there; the default outputs are still the series a run on
+     * {@code data} changes. An interrupt cancels the draws still to come (CancellationException), also
+     * once all chunks are submitted: closing the pool then interrupts the chunks, which stop between draws.
+     */
+    public Result run(Class<? extends Model> modelClass, String[] lata, Map<String, MemorySegment> data,
+                      Map<String, MemorySegment> start) {
+        BindFields fields = BindFields.of(modelClass);
+        int years = lata.length;
+
+        Map<String, double[]> base = new LinkedHashMap<>();
+        for (BindField field : fields) {
+            if (field.isDoubles() || field.isSeries())
+                base.put(field.name(), BindFields.prepareArray(start.get(field.name()), years));
+        }
+        for (String name : varied.keySet()) {
+            if (!base.containsKey(name))
+                throw new IllegalArgumentException("Can't vary " + name + ", it isn't a @Bind series of " +
+                    modelClass.getName());
+        }
+        List<String> out = !outputs.isEmpty() ? new ArrayList<>(outputs) :
+            computed(modelClass, fields, start == data ? base : asBound(fields, data, years), years);
+        for (String name : out) {
+            if (!base.containsKey(name))
+                throw new IllegalArgumentException("No @Bind series " + name + " in " + modelClass.getName());
+        }
+
+        Merger merger = new Merger(out, years);
+        Semaphore permits = new Semaphore(parallelism);
+        AtomicReference<RuntimeException> error = new AtomicReference<>();
+        SplittableRandom root = new SplittableRandom(seed);
+        long chunks = (draws + CHUNK - 1) / CHUNK;
+
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long k = 0; k < chunks && error.get() == null; k++) {
+                try {
+                    permits.acquire(); // released once the chunk is merged, bounds memory
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    merger.cancelled = true;
+                    pool.shutdownNow();
+                    throw new CancellationException("Monte Carlo run was interrupted");
+                }
+
+                long chunk = k;
+                int n = (int) Math.min(CHUNK, draws - k * CHUNK);
+                SplittableRandom rng = root.split();
+                pool.execute(() -> {
+                    try {
+                        Map<String, SeriesStats> stats = runChunk(modelClass, fields, base, out, years, n, rng, merger);
+                        permits.release(merger.completed(chunk, stats));
+                    } catch (RuntimeException e) {
+                        error.compareAndSet(null, e);
+                        permits.release(parallelism); // later chunks are never merged, don't wait for them
+                    }
+                });
+            }
+        }
+
+        if (Thread.currentThread().isInterrupted() || merger.cancelled)
+            throw new CancellationException("Monte Carlo run was interrupted");
+        if (error.get() != null)
+            throw error.get();
+        return new Result(lata, draws, merger.total, percentiles.clone());
+    }
+
+
+    // Helpers
+    private static Map<String, double[]> asBound(BindFields fields, Map<String, MemorySegment> data, int years) {
+        Map<String, double[]> bound = new LinkedHashMap<>();
+        for (BindField field : fields) {
+            if (field.isDoubles() || field.isSeries())
+                bound.put(field.name(), BindFields.prepareArray(data.get(field.name()), years));
+        }
+        return bound;
+    }
+
+    private List<String> computed(Class<? extends Model> modelClass, BindFields fields, Map<String, double[]> base,
+                                  int years) {
+        Model model = newModel(modelClass);
+        Map<String, Object> bound = new HashMap<>();
+        for (BindField field : fields) {
+            double[] values = base.get(field.name());
+            if (field.name().equals("LL"))
+                field.setInt(model, years);
+            else if (values != null && field.isSeries())
+                field.setSeries(model, Series.wrap(values.clone()));
+            else if (values != null)
+                field.setDoubles(model, values.clone());
+            bound.put(field.name(), field.get(model));
+        }
+        model.run();
+
+        List<String> computed = new ArrayList<>();
+        for (String name : base.keySet()) {
+            BindField field = fields.get(name);
+            double[] after = field.isSeries() ? field.getSeries(model).toArray() : field.getDoubles(model);
+            if (!varied.containsKey(name) && (field.get(model) != bound.get(name) || !Arrays.equals(after, base.get(name))))
+                computed.add(name);
+        }
+        return computed;
+    }
+
+    // a model instance fed reusable buffers: nothing is allocated per draw by the engine itself
+    private Map<String, SeriesStats> runChunk(Class<? extends Model> modelClass, BindFields fields,
+                                              Map<String, double[]> base, List<String> out, int years, int n,
+                                              SplittableRandom rng, Merger merger) {
+        Model model = newModel(modelClass);
+        Map<String, double[]> buffers = new HashMap<>();
+        Map<String, Series> wrapped = new HashMap<>(); // over the buffers of Series fields, bound every draw
+        base.forEach((name, values) -> buffers.put(name, new double[years]));
+        for (BindField field : fields) {
+            if (field.isSeries() && buffers.containsKey(field.name()))
+                wrapped.put(field.name(), Series.wrap(buffers.get(field.name())));
+        }
+        Map<String, SeriesStats> stats = new LinkedHashMap<>();
+        for (String name : out)
+            stats.put(name, new SeriesStats(years, SKETCH_ACCURACY));
+        double[] scratch = new double[years];
+
+        for (int d = 0; d < n && !merger.cancelled; d++) {
+            if (Thread.currentThread().isInterrupted()) {
+                merger.cancelled = true; // the pool was shut down, whatever is merged now is partial
+                break;
+            }
+            for (BindField field : fields) {
+                double[] buffer = buffers.get(field.name());
+                if (field.name().equals("LL")) {
+                    field.setInt(model, years);
+                    continue;
+                }
+                if (buffer == null)
+                    continue;
+
+                double[] b = base.get(field.name());
+                Distribution dist = varied.get(field.name());
+                if (dist == null) {
+                    System.arraycopy(b, 0, buffer, 0, years);
+                } else {
+                    for (int t = 0; t < years; t++)
+                        buffer[t] = dist.sample(rng, b[t]);
+                }
+                if (field.isSeries())
+                    field.setSeries(model, wrapped.get(field.name()));
+                else
+                    field.setDoubles(model, buffer);
+            }
+
+            model.run();
+
+            for (String name : out) {
+                BindField field = fields.get(name);
+                if (field.isSeries()) {
+                    MemorySegment.copy(field.getSeries(model).segment(), ValueLayout.JAVA_DOUBLE, 0, scratch, 0, years);
+                    stats.get(name).add(scratch);
+                } else {
+                    stats.get(name).add(field.getDoubles(model));
+                }
+            }
+        }
+        return stats;
+    }
+
+    // merges chunk results in chunk order, whatever order they complete in
+    private static final class Merger {
+        final Map<String, SeriesStats> total = new LinkedHashMap<>();
+        final TreeMap<Long, Map<String, SeriesStats>> pending = new TreeMap<>();
+        long next;
+        volatile boolean cancelled;
+
+        Merger(List<String> out, int years) {
+            for (String name : out)
+                total.put(name, new SeriesStats(years, SKETCH_ACCURACY));
+        }
+
+        // returns how many chunks were merged, each gives its permit back
+        synchronized int completed(long chunk, Map<String, SeriesStats> stats) {
+            pending.put(chunk, stats);
+            int merged = 0;
+            while (!pending.isEmpty() && pending.firstKey() == next) {
+                pending.pollFirstEntry().getValue().forEach((name, s) -> total.get(name).merge(s));
+                next++;
+                merged++;
+            }
+            return merged;
+        }
+    }
+
+    private static Model newModel(Class<? extends Model> modelClass) {
+        try {
+            return modelClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Error creating model from class: " + modelClass.getName(), e);
+        }
+    }
+
+    private static String percentName(double p) {
+        return p == Math.rint(p) ? String.valueOf((long) p) : String.valueOf(p).replace('.', '_');
+    }
+}
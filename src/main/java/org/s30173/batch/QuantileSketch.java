@@ -0,0 +1,145 @@
+package org.s30173.batch;
+
+import java.util.Arrays;
+
+/**
+ * Streaming quantiles with a relative error bound (DDSketch): values go into logarithmic buckets
+ * {@code gamma^(i-1) < |x| <= gamma^i} with {@code gamma = (1 + a) / (1 - a)}, so any quantile is
+ * within {@code a} of a value of that rank. Memory depends on the spread of the values, not on
+ * their number, and is capped at {@link #MAX_BUCKETS} per sign by merging the lowest buckets.
+ * Sketches with the same accuracy merge exactly, in any order, as long as nothing was collapsed.
+ */
+public final class QuantileSketch {
+    public static int MAX_BUCKETS = 2048;
+
+    private static final double MIN_VALUE = 1e-300; // smaller magnitudes count as zero
+
+    private final double gamma;
+    private final double logGamma;
+    private final Store positive = new Store();
+    private final Store negative = new Store();
+    private long zeros;
+    private long count;
+
+    public QuantileSketch(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1))
+            throw new IllegalArgumentException("relative accuracy must be in (0, 1): " + relativeAccuracy);
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    // NaN is ignored
+    public void add(double value) {
+        if (Double.isNaN(value))
+            return;
+        if (value > MIN_VALUE)
+            positive.add(index(value));
+        else if (value < -MIN_VALUE)
+            negative.add(index(-value));
+        else
+            zeros++;
+        count++;
+    }
+
+    public void merge(QuantileSketch other) {
+        if (other.gamma != gamma)
+            throw new IllegalArgumentException("Can't merge sketches of different accuracy");
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeros += other.zeros;
+        count += other.count;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    // q in [0, 1]; NaN when empty
+    public double quantile(double q) {
+        if (count == 0)
+            return Double.NaN;
+
+        long rank = (long) (Math.min(Math.max(q, 0), 1) * (count - 1));
+        long seen = 0;
+        for (int i = negative.counts.length - 1; i >= 0; i--) {
+            seen += negative.counts[i];
+            if (seen > rank)
+                return -value(negative.offset + i);
+        }
+        seen += zeros;
+        if (seen > rank)
+            return 0;
+        for (int i = 0; i < positive.counts.length; i++) {
+            seen += positive.counts[i];
+            if (seen > rank)
+                return value(positive.offset + i);
+        }
+        return value(positive.offset + positive.counts.length - 1);
+    }
+
+
+    // Helpers
+    private int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / logGamma);
+    }
+
+    // the point of the bucket that is within the relative accuracy of all of it
+    private double value(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    // counts[i] is bucket offset + i, grown as needed, the lowest ones collapsed beyond MAX_BUCKETS
+    private static final class Store {
+        long[] counts = new long[0];
+        int offset;
+
+        void add(int index) {
+            add(index, 1);
+        }
+
+        void add(int index, long n) {
+            if (counts.length == 0) {
+                counts = new long[8];
+                offset = index;
+            }
+            if (index < offset) {
+                if (offset + counts.length - index > MAX_BUCKETS) {
+                    counts[0] += n; // below everything kept: into the lowest bucket
+                    return;
+                }
+                int grow = offset - index;
+                long[] c = new long[counts.length + grow];
+                System.arraycopy(counts, 0, c, grow, counts.length);
+                counts = c;
+                offset = index;
+            } else if (index >= offset + counts.length) {
+                if (index - offset + 1 > MAX_BUCKETS)
+                    collapseTo(index - MAX_BUCKETS + 1);
+                int size = Math.min(Math.max(index - offset + 1, counts.length * 2), MAX_BUCKETS);
+                counts = Arrays.copyOf(counts, Math.max(size, counts.length));
+            }
+            counts[index - offset] += n;
+        }
+
+        // buckets up to newOffset become bucket newOffset, the lowest one kept
+        void collapseTo(int newOffset) {
+            int shift = newOffset - offset;
+            long low = 0;
+            for (int i = 0; i < Math.min(shift + 1, counts.length); i++)
+                low += counts[i];
+            long[] c = new long[counts.length];
+            if (shift + 1 < counts.length)
+                System.arraycopy(counts, shift + 1, c, 1, counts.length - shift - 1);
+            c[0] = low;
+            counts = c;
+            offset = newOffset;
+        }
+
+        void merge(Store other) {
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] != 0)
+                    add(other.offset + i, other.counts[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.s30173.batch;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One model run: a data file plus series that replace the file's rows,
+ * e.g. alternative {@code tw*} growth rates. Overrides follow the data file rules,
+ * a short series is extended with its last value.
+ */
+public record Scenario(String name, Path dataFile, Map<String, double[]> overrides) {
+    public Scenario {
+        overrides = Map.copyOf(overrides);
+    }
+
+    public static Scenario of(Path dataFile) {
+        return new Scenario(dataFile.getFileName().toString(), dataFile, Map.of());
+    }
+
+    public Scenario named(String name) {
+        return new Scenario(name, dataFile, overrides);
+    }
+
+    public Scenario with(String series, double... values) {
+        Map<String, double[]> o = new LinkedHashMap<>(overrides);
+        o.put(series, values);
+        return new Scenario(name, dataFile, o);
+    }
+}
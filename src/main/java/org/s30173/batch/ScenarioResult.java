@@ -0,0 +1,13 @@
+package org.s30173.batch;
+
+import java.util.Map;
+
+/**
+ * Outcome of a {@link Scenario}: the {@code LATA} years and every {@code @Bind} series of the model
+ * after {@code run()} in field order, or the error that stopped it.
+ */
+public record ScenarioResult(Scenario scenario, String[] lata, Map<String, double[]> series, Throwable error) {
+    public boolean failed() {
+        return error != null;
+    }
+}
@@ -0,0 +1,69 @@
+package org.s30173.batch;
+
+/**
+ * Per-year statistics of one series over many runs: count, mean and variance (Welford, merged with
+ * Chan's formula) and a {@link QuantileSketch} per year. Memory is per year, not per run.
+ */
+public final class SeriesStats {
+    private final double[] mean;
+    private final double[] m2;
+    private final QuantileSketch[] sketches;
+    private long count;
+
+    public SeriesStats(int years, double relativeAccuracy) {
+        mean = new double[years];
+        m2 = new double[years];
+        sketches = new QuantileSketch[years];
+        for (int t = 0; t < years; t++)
+            sketches[t] = new QuantileSketch(relativeAccuracy);
+    }
+
+    // one run's values, at least years long
+    public void add(double[] values) {
+        count++;
+        for (int t = 0; t < mean.length; t++) {
+            double v = values[t];
+            double delta = v - mean[t];
+            mean[t] += delta / count;
+            m2[t] += delta * (v - mean[t]);
+            sketches[t].add(v);
+        }
+    }
+
+    public void merge(SeriesStats other) {
+        if (other.count == 0)
+            return;
+        long n = count + other.count;
+        for (int t = 0; t < mean.length; t++) {
+            double delta = other.mean[t] - mean[t];
+            mean[t] += delta * other.count / n;
+            m2[t] += other.m2[t] + delta * delta * ((double) count * other.count / n);
+            sketches[t].merge(other.sketches[t]);
+        }
+        count = n;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double[] mean() {
+        return mean.clone();
+    }
+
+    // sample variance, NaN below two runs
+    public double[] variance() {
+        double[] v = new double[m2.length];
+        for (int t = 0; t < v.length; t++)
+            v[t] = count > 1 ? m2[t] / (count - 1) : Double.NaN;
+        return v;
+    }
+
+    // percent in [0, 100]
+    public double[] percentile(double percent) {
+        double[] p = new double[sketches.length];
+        for (int t = 0; t < p.length; t++)
+            p[t] = sketches[t].quantile(percent / 100);
+        return p;
+    }
+}
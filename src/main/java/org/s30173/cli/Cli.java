@@ -0,0 +1,305 @@
+package org.s30173.cli;
+
+import org.s30173.Controller;
+import org.s30173.batch.MonteCarlo;
+import org.s30173.jobs.Job;
+import org.s30173.helpers.EnginePool;
+import org.s30173.helpers.SeriesFile;
+import org.s30173.helpers.SeriesStorage;
+import org.s30173.jobs.JobService;
+import org.s30173.metrics.Metrics;
+import org.s30173.pipeline.Pipeline;
+import org.s30173.server.ModelServer;
+
+import javax.script.ScriptException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+
+import static org.s30173.helpers.Config.modelClassName;
+
+/**
+ * Headless entry point, nothing here loads AWT or Swing.
+ * <pre>
+ *   Cli &lt;model&gt; &lt;data file&gt; [script...] [-o output] [--binary] [--static] [--storage s] [--monte-carlo spec] [--metrics]
+ *   Cli --manifest jobs.txt [--parallelism n] [--metrics]
+ *   Cli --convert &lt;data file&gt; &lt;snapshot&gt;
+ *   Cli --pipeline &lt;definition&gt; &lt;data file&gt; [-o output]
+ *   Cli --serve [port]
+ * </pre>
+ * A manifest has one job per line in the same form, with arguments quoted as in a shell
+ * ({@code "..."} or {@code '...'}, {@code #} starts a comment line). Its jobs run concurrently, at most
+ * {@code --parallelism} of them at a time (the number of processors by default), so only their datasets
+ * and models are loaded at once; results are streamed to the job's {@code -o} file, or to stdout when
+ * there is none.
+ * {@code --binary} writes a {@link org.s30173.helpers.SeriesFile} instead of TSV (needs {@code -o}).
+ * {@code --static} compiles the job's scripts with {@code @CompileStatic}, see {@link org.s30173.helpers.StaticScripts}.
+ * {@code --storage heap|offheap|file:<dir>} is where the {@link org.s30173.helpers.Series} fields of the
+ * job's model live, see {@link SeriesStorage}.
+ * {@code --monte-carlo "draws=100000 twKI=normal:0.01"} adds percentile rows from a {@link MonteCarlo} run
+ * of the job's model after its scripts.
+ * {@code --convert} turns a text data file into a snapshot that loads without parsing.
+ * {@code --pipeline} runs the models of a {@link Pipeline} definition file together and writes their rows.
+ * {@code --serve} runs the {@link ModelServer} HTTP service on the loopback address until killed
+ * (port 8080 by default, 0 picks a free one) and prints the token that creating a session needs.
+ * {@code --metrics} prints the stage metrics to stderr when all jobs are done.
+ */
+public class Cli {
+    record Task(String model, String dataFile, List<String> scripts, String output, boolean binary,
+                boolean compileStatic, SeriesStorage storage, MonteCarlo monteCarlo) {}
+
+    public static void main(String[] args) {
+        List<String> argList = new ArrayList<>(Arrays.asList(args));
+        boolean metrics = argList.remove("--metrics");
+        if (metrics)
+            Metrics.enable();
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        int p = argList.indexOf("--parallelism");
+        if (p >= 0) {
+            parallelism = p + 1 < argList.size() && argList.get(p + 1).matches("[1-9][0-9]*") ?
+                Integer.parseInt(argList.get(p + 1)) : 0;
+            if (parallelism == 0) {
+                System.err.println("--parallelism needs a number of jobs above 0");
+                usage();
+                System.exit(2);
+            }
+            argList.subList(p, p + 2).clear();
+        }
+        args = argList.toArray(new String[0]);
+
+        if (args.length == 0) {
+            usage();
+            System.exit(2);
+        }
+
+        try {
+            if (args[0].equals("--convert") && args.length == 3) {
+                SeriesFile.convert(Path.of(args[1]), Path.of(args[2]));
+                System.exit(0);
+            }
+            if (args[0].equals("--pipeline") && (args.length == 3 || args.length == 5 && args[3].equals("-o"))) {
+                runPipeline(args[1], args[2], args.length == 5 ? args[4] : null);
+                if (metrics)
+                    System.err.print(Metrics.report());
+                System.exit(0);
+            }
+
+            if (args[0].equals("--serve") && args.length <= 2) {
+                serve(args.length == 2 ? Integer.parseInt(args[1]) : 8080);
+                return; // the server's threads keep running
+            }
+
+            List<Task> tasks = args[0].equals("--manifest") && args.length == 2 ?
+                readManifest(Path.of(args[1])) : List.of(parseTask(Arrays.asList(args)));
+
+            if (tasks.stream().anyMatch(t -> !t.scripts().isEmpty()))
+                EnginePool.shared().warmUp(); // while the data is read
+
+            int failed = run(tasks, parallelism);
+            if (metrics)
+                System.err.print(Metrics.report());
+            System.exit(failed == 0 ? 0 : 1);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            usage();
+            System.exit(2);
+        }
+    }
+
+    // returns the number of failed tasks; at most parallelism of them run at a time, the others wait
+    static int run(List<Task> tasks, int parallelism) {
+        List<Job<Controller>> jobs = new ArrayList<>();
+        Semaphore running = new Semaphore(parallelism, true); // fair: jobs start in manifest order
+        int failed = 0;
+
+        try (JobService service = new JobService(Runnable::run)) {
+            for (Task t : tasks)
+                jobs.add(service.submit(t, t.model() + " " + t.dataFile(), job -> {
+                    job.stage("Waiting");
+                    running.acquire();
+                    try {
+                        job.stage("Running");
+                        return run(t);
+                    } finally {
+                        running.release();
+                    }
+                }, (_, _) -> {}));
+
+            for (int i = 0; i < jobs.size(); i++) {
+                Task t = tasks.get(i);
+                try {
+                    jobs.get(i).await();
+                } catch (ExecutionException e) {
+                    failed++;
+                    System.err.println("Failed: " + t.model() + " " + t.dataFile() + ": " + describe(e.getCause()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return tasks.size();
+                }
+            }
+        }
+        return failed;
+    }
+
+
+    // Helpers
+    // the controller is closed once the results are written, its series are gone
+    private static Controller run(Task t) throws ScriptException, IOException {
+        try (Controller c = new Controller(modelClassName(t.model()))) {
+            c.compileStatic(t.compileStatic())
+                .storage(t.storage())
+                .readDataFrom(t.dataFile())
+                .runModel();
+            if (!t.scripts().isEmpty())
+                c.runScriptsFromFiles(t.scripts()); // independent ones run in parallel
+            if (t.monteCarlo() != null)
+                c.runMonteCarlo(t.monteCarlo());
+
+            if (t.output() != null) {
+                try (FileChannel ch = FileChannel.open(Path.of(t.output()), StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    if (t.binary())
+                        c.writeResultsAsBinary(ch);
+                    else
+                        c.writeResultsAsTsv(ch);
+                }
+                return c;
+            }
+
+            PrintStream out = System.out;
+            synchronized (out) {
+                out.println("# " + t.model() + " " + t.dataFile());
+                c.writeResultsAsTsv(out);
+                out.flush();
+            }
+            return c;
+        }
+    }
+
+    private static void runPipeline(String definition, String dataFile, String output) throws IOException {
+        try (Pipeline p = Pipeline.fromFile(definition).readDataFrom(dataFile).run()) {
+            if (output == null) {
+                p.writeResultsAsTsv(System.out);
+                return;
+            }
+            try (var w = Files.newBufferedWriter(Path.of(output))) {
+                p.writeResultsAsTsv(w);
+            }
+        }
+    }
+
+    private static void serve(int port) throws IOException {
+        ModelServer server = new ModelServer(port).start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.err.println("Listening on http://127.0.0.1:" + server.port() + "/sessions");
+        System.err.println("Create sessions with the header: Authorization: Bearer " + server.token());
+    }
+
+    private static List<Task> readManifest(Path manifest) throws IOException {
+        List<Task> tasks = new ArrayList<>();
+        for (String line : Files.readAllLines(manifest)) {
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            tasks.add(parseTask(words(line)));
+        }
+        if (tasks.isEmpty())
+            throw new IllegalArgumentException("No jobs in manifest: " + manifest);
+        return tasks;
+    }
+
+    // whitespace separates words except within double or single quotes, which are dropped
+    static List<String> words(String line) {
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        boolean inWord = false;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == quote)
+                    quote = 0;
+                else
+                    word.append(c);
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+                inWord = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inWord)
+                    words.add(word.toString());
+                word.setLength(0);
+                inWord = false;
+            } else {
+                word.append(c);
+                inWord = true;
+            }
+        }
+        if (quote != 0)
+            throw new IllegalArgumentException("Unclosed quote in manifest line: " + line);
+        if (inWord)
+            words.add(word.toString());
+        return words;
+    }
+
+    private static Task parseTask(List<String> args) {
+        List<String> rest = new ArrayList<>(args);
+        String output = null;
+        boolean binary = rest.remove("--binary");
+        boolean compileStatic = rest.remove("--static");
+        SeriesStorage storage = SeriesStorage.HEAP;
+
+        int s = rest.indexOf("--storage");
+        if (s >= 0) {
+            if (s + 1 >= rest.size())
+                throw new IllegalArgumentException("--storage needs heap, offheap or file:<dir>");
+            storage = SeriesStorage.parse(rest.get(s + 1));
+            rest.subList(s, s + 2).clear();
+        }
+
+        MonteCarlo monteCarlo = null;
+        int mc = rest.indexOf("--monte-carlo");
+        if (mc >= 0) {
+            if (mc + 1 >= rest.size())
+                throw new IllegalArgumentException("--monte-carlo needs a spec, e.g. \"draws=10000 twKI=normal:0.01\"");
+            monteCarlo = MonteCarlo.parse(rest.get(mc + 1));
+            rest.subList(mc, mc + 2).clear();
+        }
+
+        int o = rest.indexOf("-o");
+        if (o >= 0) {
+            if (o + 1 >= rest.size())
+                throw new IllegalArgumentException("-o needs a file name");
+            output = rest.get(o + 1);
+            rest.subList(o, o + 2).clear();
+        }
+        if (rest.size() < 2)
+            throw new IllegalArgumentException("Expected a model and a data file: " + String.join(" ", args));
+        if (binary && output == null)
+            throw new IllegalArgumentException("--binary needs -o");
+
+        return new Task(rest.get(0), rest.get(1), List.copyOf(rest.subList(2, rest.size())), output, binary,
+            compileStatic, storage, monteCarlo);
+    }
+
+    private static String describe(Throwable e) {
+        return e.getMessage() != null ? e.getMessage() : e.toString();
+    }
+
+    private static void usage() {
+        System.err.println("""
+            usage: Cli <model> <data file> [script...] [-o output] [--binary] [--static] [--storage s]
+                              [--monte-carlo spec] [--metrics]
+                   Cli --manifest <file> [--parallelism n] [--metrics]   (one job per line, same form)
+                   Cli --convert <data file> <snapshot>
+                   Cli --pipeline <definition> <data file> [-o output]
+                   Cli --serve [port]""");
+    }
+}
@@ -7,4 +7,8 @@ import java.lang.annotation.Target;
 
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.FIELD)
-public @interface Bind {}
\ No newline at end of file
+public @interface Bind {
+    // computed by the model for every year: bound pre-sized to LL, and with reused buffers (see
+    // SeriesBuffers) kept as the last run left it instead of being refilled, so the model needn't allocate it
+    boolean output() default false;
+}
@@ -0,0 +1,78 @@
+package org.s30173.helpers;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * A single {@link Bind} field of a model class, resolved once into a {@link VarHandle}.
+ * The typed accessors avoid boxing for the common {@code int}, {@code double[]} and {@link Series} fields.
+ */
+public final class BindField {
+    private final String name;
+    private final Class<?> type;
+    private final VarHandle handle;
+    private final boolean output;
+
+    BindField(String name, Class<?> type, VarHandle handle, boolean output) {
+        this.name = name;
+        this.type = type;
+        this.handle = handle;
+        this.output = output;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public Class<?> type() {
+        return type;
+    }
+
+    // @Bind(output = true)
+    public boolean isOutput() {
+        return output;
+    }
+
+    public boolean isInt() {
+        return type == int.class;
+    }
+
+    public boolean isDoubles() {
+        return type == double[].class;
+    }
+
+    public boolean isSeries() {
+        return type == Series.class;
+    }
+
+    public Object get(Model model) {
+        return handle.get(model);
+    }
+
+    public void set(Model model, Object value) {
+        handle.set(model, value);
+    }
+
+    public int getInt(Model model) {
+        return (int) handle.get(model);
+    }
+
+    public void setInt(Model model, int value) {
+        handle.set(model, value);
+    }
+
+    public double[] getDoubles(Model model) {
+        return (double[]) handle.get(model);
+    }
+
+    public void setDoubles(Model model, double[] value) {
+        handle.set(model, value);
+    }
+
+    public Series getSeries(Model model) {
+        return (Series) handle.get(model);
+    }
+
+    public void setSeries(Model model, Series value) {
+        handle.set(model, value);
+    }
+}
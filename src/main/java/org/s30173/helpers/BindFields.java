@@ -0,0 +1,195 @@
+package org.s30173.helpers;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * The {@link Bind} fields of a model class in declaration order. Resolved once per class and cached,
+ * so creating and re-running models never reflects over fields again. Names and types come from the
+ * {@link ModelIndex} when the class is in it and its field hash matches the loaded class, otherwise from
+ * reflection over the fields and their annotations.
+ */
+public final class BindFields implements Iterable<BindField> {
+    private static final ClassValue<BindFields> cache = new ClassValue<>() {
+        @Override
+        protected BindFields computeValue(Class<?> type) {
+            return new BindFields(type);
+        }
+    };
+
+    private final List<BindField> fields;
+    private final Map<String, BindField> byName = new HashMap<>();
+
+    private BindFields(Class<?> modelClass) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(modelClass, MethodHandles.lookup());
+            List<BindField> list = fromIndex(modelClass, lookup);
+            if (list == null)
+                list = fromReflection(modelClass, lookup);
+
+            list.forEach(bf -> byName.put(bf.name(), bf));
+            this.fields = List.copyOf(list);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Failed to resolve @Bind fields of: " + modelClass.getName(), e);
+        }
+    }
+
+    public static BindFields of(Class<? extends Model> modelClass) {
+        return cache.get(modelClass);
+    }
+
+    // LL gets the number of years, every other field a copy of its series (missing ones are zeros,
+    // short ones are extended with their last value)
+    public void bind(Model model, int years, Map<String, double[]> data) {
+        for (BindField field : fields) {
+            if (field.name().equals("LL"))
+                field.setInt(model, years);
+            else if (field.isSeries())
+                field.setSeries(model, Series.wrap(prepareArray(data.get(field.name()), years)));
+            else
+                field.setDoubles(model, prepareArray(data.get(field.name()), years));
+        }
+    }
+
+    // same as above for series held as segments (mapped snapshots or wrapped arrays), each bound
+    // field gets the only copy that's made; Series fields are allocated in the caller's scope (closing
+    // it frees them) and filled segment to segment, never through the heap
+    public void bindSegments(Model model, int years, Map<String, MemorySegment> data, SeriesStorage.Scope scope) {
+        for (BindField field : fields) {
+            if (field.name().equals("LL"))
+                field.setInt(model, years);
+            else if (field.isSeries())
+                field.setSeries(model, prepareSeries(data.get(field.name()), years, scope));
+            else
+                field.setDoubles(model, prepareArray(data.get(field.name()), years));
+        }
+    }
+
+    public static double[] prepareArray(double[] vals, int len) {
+        if (vals == null)
+            return new double[len];
+
+        double[] arr = new double[len];
+        System.arraycopy(vals, 0, arr, 0, vals.length);
+
+        if (vals.length < len)
+            Arrays.fill(arr, vals.length, len, vals[vals.length - 1]);
+
+        return arr;
+    }
+
+    public static double[] prepareArray(MemorySegment vals, int len) {
+        double[] arr = new double[len];
+        if (vals != null)
+            fill(vals, arr);
+        return arr;
+    }
+
+    public static Series prepareSeries(MemorySegment vals, int len, SeriesStorage.Scope scope) {
+        Series series = scope.allocate(len);
+        if (vals != null)
+            fill(vals, series);
+        return series;
+    }
+
+    // refills a buffer in place the way prepareArray fills a new one (zeros if vals is null)
+    public static void fill(MemorySegment vals, double[] into) {
+        if (vals == null) {
+            Arrays.fill(into, 0);
+            return;
+        }
+
+        int n = Math.toIntExact(Math.min(vals.byteSize() / Double.BYTES, into.length));
+        MemorySegment.copy(vals, ValueLayout.JAVA_DOUBLE, 0, into, 0, n);
+
+        if (n < into.length)
+            Arrays.fill(into, n, into.length, n > 0 ? into[n - 1] : 0);
+    }
+
+    public static void fill(MemorySegment vals, Series into) {
+        if (vals == null) {
+            into.segment().fill((byte) 0);
+            return;
+        }
+
+        int len = into.length();
+        long n = Math.min(vals.byteSize(), (long) len * Double.BYTES) / Double.BYTES;
+        MemorySegment.copy(vals, 0, into.segment(), 0, n * Double.BYTES);
+
+        if (n < len) {
+            double last = n > 0 ? into.get((int) n - 1) : 0;
+            for (int i = (int) n; i < len; i++)
+                into.set(i, last);
+        }
+    }
+
+    public BindField get(String name) {
+        return byName.get(name);
+    }
+
+    public List<BindField> list() {
+        return fields;
+    }
+
+    public Stream<BindField> stream() {
+        return fields.stream();
+    }
+
+    @Override
+    public Iterator<BindField> iterator() {
+        return fields.iterator();
+    }
+
+
+    // Helpers
+    // null if the class isn't in the ModelIndex or the index is stale
+    private static List<BindField> fromIndex(Class<?> modelClass, MethodHandles.Lookup lookup) {
+        List<ModelIndex.Field> indexed = ModelIndex.bindFields(modelClass.getName());
+        Integer hash = ModelIndex.fieldHash(modelClass.getName());
+        if (indexed == null || hash == null || hash != fieldHash(modelClass))
+            return null;
+
+        List<BindField> list = new ArrayList<>();
+        try {
+            for (ModelIndex.Field field : indexed) {
+                Class<?> type = MethodType.fromMethodDescriptorString("(" + field.descriptor() + ")V",
+                        modelClass.getClassLoader()).parameterType(0);
+                list.add(new BindField(field.name(), type, lookup.findVarHandle(modelClass, field.name(), type),
+                    field.output()));
+            }
+        } catch (NoSuchFieldException | IllegalAccessException | TypeNotPresentException | IllegalArgumentException e) {
+            return null;
+        }
+        return list;
+    }
+
+    // as ModelIndexProcessor computes it: an index left over from before a field was added, removed or
+    // changed (e.g. by a build that skipped the processor) doesn't match; names and types only, no annotations
+    private static int fieldHash(Class<?> modelClass) {
+        int hash = 0;
+        for (Field field : modelClass.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) && !field.isSynthetic())
+                hash += (field.getName() + ":" + field.getType().descriptorString()).hashCode();
+        }
+        return hash;
+    }
+
+    private static List<BindField> fromReflection(Class<?> modelClass, MethodHandles.Lookup lookup)
+            throws IllegalAccessException {
+        List<BindField> list = new ArrayList<>();
+        for (Field field : modelClass.getDeclaredFields()) {
+            Bind bind = field.getAnnotation(Bind.class);
+            if (bind == null || Modifier.isStatic(field.getModifiers()))
+                continue;
+
+            list.add(new BindField(field.getName(), field.getType(), lookup.unreflectVarHandle(field), bind.output()));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,14 @@
+package org.s30173.helpers;
+
+// No AWT or Swing here, so the CLI can use it without loading either
+public class Config {
+    public static String MODELS_PACKAGE = "org.s30173.models.";
+    public static String MODELS_DIR     = "src/main/java/org/s30173/models";
+    public static String DATA_DIR       = "src/data/";
+    public static String SCRIPTS_DIR    = "src/scripts/";
+
+    // accepts "Model1" as well as a fully qualified class name
+    public static String modelClassName(String name) {
+        return name.contains(".") ? name : MODELS_PACKAGE + name;
+    }
+}
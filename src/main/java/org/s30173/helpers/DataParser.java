@@ -0,0 +1,266 @@
+package org.s30173.helpers;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parser for model data files. The file is memory-mapped and tokenized as bytes: only series names
+ * and {@code LATA} years become Strings, values are parsed straight into exactly sized {@code double[]}.
+ * Files larger than {@link #CHUNK_SIZE} are split at line boundaries and the chunks are parsed in parallel.
+ * <p>
+ * The result is the same as splitting each line on whitespace and using {@link Double#parseDouble}:
+ * a line starting with {@code "LATA "} is the header, any other line is {@code name value...}.
+ */
+public class DataParser {
+    public static long CHUNK_SIZE = 32L << 20;
+
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private record Row(String name, double[] values, String[] lata) {}
+
+    private DataParser() {}
+
+    public static Dataset parse(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+             Arena arena = Arena.ofShared()) {
+            long size = ch.size();
+            MemorySegment seg = size == 0 ? MemorySegment.NULL : ch.map(FileChannel.MapMode.READ_ONLY, 0, size, arena);
+
+            List<long[]> chunks = split(seg, size);
+            List<List<Row>> parsed = chunks.size() == 1 ?
+                List.of(parseChunk(seg, 0, size)) :
+                chunks.parallelStream().map(c -> parseChunk(seg, c[0], c[1])).toList();
+
+            // merge in file order, later lines win just like repeated puts
+            String[] lata = null;
+            Map<String, double[]> series = new LinkedHashMap<>();
+            for (List<Row> rows : parsed) {
+                for (Row row : rows) {
+                    if (row.lata() != null)
+                        lata = row.lata();
+                    else
+                        series.put(row.name(), row.values());
+                }
+            }
+            return new Dataset(lata, series);
+        }
+    }
+
+
+    // Helpers
+    private static List<long[]> split(MemorySegment seg, long size) {
+        List<long[]> chunks = new ArrayList<>();
+        long start = 0;
+        while (start < size) {
+            long end = start + CHUNK_SIZE;
+            if (end >= size) {
+                end = size;
+            } else {
+                while (end < size && !isEol(at(seg, end)))
+                    end++;
+                if (end < size && at(seg, end) == '\r' && end + 1 < size && at(seg, end + 1) == '\n')
+                    end++;
+                end = Math.min(end + 1, size);
+            }
+            chunks.add(new long[]{start, end});
+            start = end;
+        }
+        if (chunks.isEmpty())
+            chunks.add(new long[]{0, 0});
+        return chunks;
+    }
+
+    private static List<Row> parseChunk(MemorySegment seg, long from, long to) {
+        List<Row> rows = new ArrayList<>();
+        long p = from;
+        while (p < to) {
+            long end = p;
+            while (end < to && !isEol(at(seg, end)))
+                end++;
+
+            rows.add(parseLine(seg, p, end));
+
+            if (end < to && at(seg, end) == '\r' && end + 1 < to && at(seg, end + 1) == '\n')
+                end++;
+            p = end + 1;
+        }
+        return rows;
+    }
+
+    private static Row parseLine(MemorySegment seg, long from, long to) {
+        if (to - from >= 5 && at(seg, from) == 'L' && at(seg, from + 1) == 'A' && at(seg, from + 2) == 'T' &&
+            at(seg, from + 3) == 'A' && at(seg, from + 4) == ' ') {
+            return new Row(null, null, parseHeader(seg, from + 5, to));
+        }
+
+        // trim, same as String.trim()
+        while (from < to && isTrimmed(at(seg, from)))
+            from++;
+        while (to > from && isTrimmed(at(seg, to - 1)))
+            to--;
+
+        long nameEnd = from;
+        while (nameEnd < to && !isSpace(at(seg, nameEnd)))
+            nameEnd++;
+        String name = string(seg, from, nameEnd);
+
+        int count = 0;
+        for (long p = nameEnd; p < to; ) {
+            while (p < to && isSpace(at(seg, p)))
+                p++;
+            count++;
+            while (p < to && !isSpace(at(seg, p)))
+                p++;
+        }
+
+        double[] values = new double[count];
+        int i = 0;
+        for (long p = nameEnd; p < to; ) {
+            while (p < to && isSpace(at(seg, p)))
+                p++;
+            long tokenEnd = p;
+            while (tokenEnd < to && !isSpace(at(seg, tokenEnd)))
+                tokenEnd++;
+            values[i++] = parseDouble(seg, p, tokenEnd);
+            p = tokenEnd;
+        }
+        return new Row(name, values, null);
+    }
+
+    private static String[] parseHeader(MemorySegment seg, long from, long to) {
+        while (from < to && isTrimmed(at(seg, from)))
+            from++;
+        while (to > from && isTrimmed(at(seg, to - 1)))
+            to--;
+        if (from == to)
+            return new String[]{""};
+
+        List<String> years = new ArrayList<>();
+        for (long p = from; p < to; ) {
+            long tokenEnd = p;
+            while (tokenEnd < to && !isSpace(at(seg, tokenEnd)))
+                tokenEnd++;
+            years.add(string(seg, p, tokenEnd));
+            p = tokenEnd;
+            while (p < to && isSpace(at(seg, p)))
+                p++;
+        }
+        return years.toArray(new String[0]);
+    }
+
+    // Fast path for plain decimals with up to 15 significant digits and a small exponent, where
+    // one multiplication or division by an exact power of ten is correctly rounded.
+    // Everything else goes through Double.parseDouble, so results and errors stay the same.
+    private static double parseDouble(MemorySegment seg, long from, long to) {
+        long p = from;
+        boolean negative = false;
+        if (p < to && (at(seg, p) == '-' || at(seg, p) == '+')) {
+            negative = at(seg, p) == '-';
+            p++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean seen = false;
+
+        for (; p < to && isDigit(at(seg, p)); p++) {
+            seen = true;
+            int d = at(seg, p) - '0';
+            if (mantissa == 0 && d == 0)
+                continue;
+            if (++digits > 15)
+                return slowParse(seg, from, to);
+            mantissa = mantissa * 10 + d;
+        }
+        if (p < to && at(seg, p) == '.') {
+            for (p++; p < to && isDigit(at(seg, p)); p++) {
+                seen = true;
+                int d = at(seg, p) - '0';
+                scale--;
+                if (mantissa == 0 && d == 0)
+                    continue;
+                if (++digits > 15)
+                    return slowParse(seg, from, to);
+                mantissa = mantissa * 10 + d;
+            }
+        }
+        if (!seen)
+            return slowParse(seg, from, to);
+
+        if (p < to && (at(seg, p) == 'e' || at(seg, p) == 'E')) {
+            p++;
+            boolean negExp = false;
+            if (p < to && (at(seg, p) == '-' || at(seg, p) == '+')) {
+                negExp = at(seg, p) == '-';
+                p++;
+            }
+            if (p == to)
+                return slowParse(seg, from, to);
+            int exp = 0;
+            for (; p < to && isDigit(at(seg, p)); p++) {
+                exp = exp * 10 + (at(seg, p) - '0');
+                if (exp > 400)
+                    return slowParse(seg, from, to);
+            }
+            scale += negExp ? -exp : exp;
+        }
+        if (p != to)
+            return slowParse(seg, from, to);
+
+        double value;
+        if (mantissa == 0)
+            value = 0;
+        else if (scale == 0)
+            value = mantissa;
+        else if (scale > 0 && scale <= 22)
+            value = mantissa * POW10[scale];
+        else if (scale < 0 && scale >= -22)
+            value = mantissa / POW10[-scale];
+        else
+            return slowParse(seg, from, to);
+
+        return negative ? -value : value;
+    }
+
+    private static double slowParse(MemorySegment seg, long from, long to) {
+        return Double.parseDouble(string(seg, from, to));
+    }
+
+    private static String string(MemorySegment seg, long from, long to) {
+        return new String(seg.asSlice(from, to - from).toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+    }
+
+    private static byte at(MemorySegment seg, long i) {
+        return seg.get(ValueLayout.JAVA_BYTE, i);
+    }
+
+    private static boolean isEol(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    private static boolean isSpace(byte b) { // \s of the old split("\\s+") without line breaks
+        return b == ' ' || b == '\t' || b == '\f' || b == 0x0B;
+    }
+
+    private static boolean isTrimmed(byte b) {
+        return b >= 0 && b <= ' ';
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
@@ -0,0 +1,9 @@
+package org.s30173.helpers;
+
+import java.util.Map;
+
+/**
+ * Parsed content of a data file: the {@code LATA} header (null if the file has none)
+ * and the named series in file order.
+ */
+public record Dataset(String[] lata, Map<String, double[]> series) {}
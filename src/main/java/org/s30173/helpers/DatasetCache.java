@@ -0,0 +1,184 @@
+package org.s30173.helpers;
+
+import org.s30173.helpers.SeriesFile.Snapshot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Loaded data files shared by all controllers, keyed by path, modification time and size, so a data
+ * file that didn't change is read once. Bounded by {@link #DATASET_CACHE_BYTES} of parsed series on the
+ * heap; mapped snapshots cost next to nothing here since their pages belong to the OS.
+ * <p>
+ * Cached series are read-only: text data is wrapped, snapshots are mapped. Binding copies them anyway.
+ */
+public class DatasetCache {
+    public static long DATASET_CACHE_BYTES = 256L << 20;
+
+    private static final long ENTRY_OVERHEAD = 128; // per series: name, map entry, segment
+    private static final long SETTLE_MS = 100;      // editors save in several writes
+
+    private record Key(Path file, long modified, long size) {}
+
+    private record Entry(Snapshot data, long bytes) {}
+
+    private static final Map<Key, Entry> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private static long cachedBytes;
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private DatasetCache() {}
+
+    // a text data file or a SeriesFile snapshot
+    public static Snapshot load(Path file) throws IOException {
+        file = file.toAbsolutePath().normalize();
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        Key key = new Key(file, attrs.lastModifiedTime().toMillis(), attrs.size());
+
+        synchronized (cache) {
+            Entry e = cache.get(key);
+            if (e != null) {
+                hits.incrementAndGet();
+                return e.data();
+            }
+        }
+
+        misses.incrementAndGet();
+        Snapshot data = read(file); // read outside the lock
+
+        long bytes = 0;
+        for (MemorySegment values : data.series().values())
+            bytes += ENTRY_OVERHEAD + (values.isNative() ? 0 : values.byteSize());
+
+        synchronized (cache) {
+            if (bytes > DATASET_CACHE_BYTES)
+                return data; // would evict everything else
+
+            removeFile(key.file(), key); // an older version of the file is dead
+            Entry prev = cache.putIfAbsent(key, new Entry(data, bytes));
+            if (prev != null)
+                return prev.data();
+
+            cachedBytes += bytes;
+            var it = cache.entrySet().iterator();
+            while (cachedBytes > DATASET_CACHE_BYTES && it.hasNext()) {
+                cachedBytes -= it.next().getValue().bytes();
+                it.remove();
+            }
+            return data;
+        }
+    }
+
+    public static void invalidate(Path file) {
+        Path f = file.toAbsolutePath().normalize();
+        synchronized (cache) {
+            removeFile(f, null);
+        }
+    }
+
+    public static void clear() {
+        synchronized (cache) {
+            cache.clear();
+            cachedBytes = 0;
+        }
+    }
+
+    /**
+     * Watches a data directory on a background thread: every created, modified or deleted file is
+     * invalidated and then passed to {@code onChange}, once per burst of events. If events were lost
+     * the whole cache is cleared and {@code onChange} gets the directory itself.
+     */
+    public static Closeable watch(Path dir, Consumer<Path> onChange) throws IOException {
+        Path d = dir.toAbsolutePath().normalize();
+        WatchService ws = d.getFileSystem().newWatchService();
+        d.register(ws, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+
+        Thread.ofVirtual().name("data-watch " + d).start(() -> {
+            try {
+                while (true) {
+                    Set<Path> changed = new LinkedHashSet<>();
+                    WatchKey key = ws.take();
+                    do {
+                        for (WatchEvent<?> event : key.pollEvents()) {
+                            if (event.kind() == OVERFLOW)
+                                changed.add(d);
+                            else
+                                changed.add(d.resolve((Path) event.context()));
+                        }
+                        key.reset();
+                    } while ((key = ws.poll(SETTLE_MS, TimeUnit.MILLISECONDS)) != null);
+
+                    for (Path file : changed) {
+                        if (file.equals(d))
+                            clear();
+                        else
+                            invalidate(file);
+                        onChange.accept(file);
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // closed
+            }
+        });
+        return ws;
+    }
+
+    public static long hits() {
+        return hits.get();
+    }
+
+    public static long misses() {
+        return misses.get();
+    }
+
+    public static int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public static String stats() {
+        synchronized (cache) {
+            return "datasets cached: " + cache.size() + " (" + (cachedBytes >> 20) + " MB), hits: " + hits() +
+                   ", misses: " + misses();
+        }
+    }
+
+
+    // Helpers
+    private static Snapshot read(Path file) throws IOException {
+        if (SeriesFile.isSeriesFile(file))
+            return SeriesFile.map(file);
+
+        Dataset data = DataParser.parse(file);
+        Map<String, MemorySegment> series = new LinkedHashMap<>();
+        data.series().forEach((name, values) -> series.put(name, MemorySegment.ofArray(values).asReadOnly()));
+        return new Snapshot(data.lata(), Collections.unmodifiableMap(series));
+    }
+
+    // called with the lock held
+    private static void removeFile(Path file, Key keep) {
+        var it = cache.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> e = it.next();
+            if (e.getKey().file().equals(file) && !e.getKey().equals(keep)) {
+                cachedBytes -= e.getValue().bytes();
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.s30173.helpers;
+
+import javax.script.*;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Groovy engines shared by all controllers. Compiled scripts are evaluated against each controller's own
+ * {@link ScriptContext} (see {@link #newContext}), so script variables never leak between controllers.
+ * {@link #compile} doesn't borrow a pooled engine but makes one per script, see {@link GroovyEngines#compile}.
+ * <p>
+ * {@link #warmUp} bootstraps the Groovy runtime and fills the pool in the background, so the first
+ * "Run model" doesn't pay for it.
+ */
+public class EnginePool {
+    public static int ENGINE_POOL_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private static final EnginePool shared = new EnginePool(ENGINE_POOL_SIZE);
+
+    private final BlockingQueue<ScriptEngine> idle = new LinkedBlockingQueue<>();
+    private final AtomicInteger created = new AtomicInteger();
+    private final int size;
+
+    public EnginePool(int size) {
+        if (size < 1)
+            throw new IllegalArgumentException("pool size must be positive: " + size);
+        this.size = size;
+    }
+
+    public static EnginePool shared() {
+        return shared;
+    }
+
+    // returns immediately, the engines are created and the runtime warmed on a background thread
+    public EnginePool warmUp() {
+        Thread.ofVirtual().name("groovy warm-up").start(() -> {
+            try {
+                ScriptEngine engine = borrow();
+                try {
+                    ((Compilable) engine).compile("def x = [1d] as double[]; x[0] * 2").eval(newContext());
+                } finally {
+                    release(engine);
+                }
+                while (created.get() < size)
+                    create().ifPresent(idle::offer);
+            } catch (ScriptException e) {
+                // first real compile reports it
+            }
+        });
+        return this;
+    }
+
+    // a fresh context with empty bindings, one per controller
+    public ScriptContext newContext() {
+        ScriptContext context = new SimpleScriptContext();
+        context.setBindings(new SimpleBindings(), ScriptContext.ENGINE_SCOPE);
+        return context;
+    }
+
+    public CompiledScript compile(String script) throws ScriptException {
+        return GroovyEngines.compile(script);
+    }
+
+    // blocks while all engines are borrowed, an interrupt is a cancellation of the calling job
+    public ScriptEngine borrow() {
+        ScriptEngine engine = idle.poll();
+        if (engine != null)
+            return engine;
+
+        var fresh = create();
+        if (fresh.isPresent())
+            return fresh.get();
+
+        try {
+            return idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for a script engine");
+        }
+    }
+
+    public void release(ScriptEngine engine) {
+        engine.getBindings(ScriptContext.ENGINE_SCOPE).clear(); // nothing may survive to the next borrower
+        idle.offer(engine);
+    }
+
+    public int created() {
+        return created.get();
+    }
+
+    public int idle() {
+        return idle.size();
+    }
+
+
+    // Helpers
+    private Optional<ScriptEngine> create() {
+        int n;
+        while ((n = created.get()) < size) {
+            if (created.compareAndSet(n, n + 1))
+                return Optional.of(GroovyEngines.create());
+        }
+        return Optional.empty();
+    }
+}
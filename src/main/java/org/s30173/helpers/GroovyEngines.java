@@ -0,0 +1,42 @@
+package org.s30173.helpers;
+
+import groovy.lang.GroovyClassLoader;
+import groovy.transform.ThreadInterrupt;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.customizers.ASTTransformationCustomizer;
+import org.codehaus.groovy.jsr223.GroovyScriptEngineImpl;
+import org.codehaus.groovy.runtime.InvokerHelper;
+
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+public class GroovyEngines {
+    private GroovyEngines() {}
+
+    // scripts compiled by this engine check Thread.interrupted() in every loop, so a cancelled job
+    // stops even a runaway script
+    public static ScriptEngine create() {
+        CompilerConfiguration config = new CompilerConfiguration();
+        config.addCompilationCustomizers(new ASTTransformationCustomizer(ThreadInterrupt.class));
+        return new GroovyScriptEngineImpl(new GroovyClassLoader(GroovyEngines.class.getClassLoader(), config));
+    }
+
+    // on an engine and class loader of its own, referenced only by the compiled script: once the ScriptCache
+    // drops the script its classes can be unloaded, while a long-lived engine's loader keeps every class it made
+    public static CompiledScript compile(String script) throws ScriptException {
+        return ((Compilable) create()).compile(script);
+    }
+
+    // the Groovy runtime keeps its meta classes and call site caches of every class that ran, which keeps
+    // the class (and its loader) loaded: dropped for the classes of a script the ScriptCache evicted
+    static void unload(CompiledScript compiled) {
+        GroovyClassLoader loader = compiled instanceof StaticScripts.Compiled s ? s.loader :
+            compiled.getEngine() instanceof GroovyScriptEngineImpl engine ? engine.getClassLoader() : null;
+        if (loader == null)
+            return;
+        for (Class<?> c : loader.getLoadedClasses())
+            InvokerHelper.removeClass(c);
+    }
+}
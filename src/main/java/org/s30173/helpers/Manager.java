@@ -4,13 +4,11 @@ import javax.swing.border.Border;
 import javax.swing.border.LineBorder;
 import java.awt.*;
 
+// GUI settings; locations shared with the headless entry points are in Config
 public class Manager {
-    public static String MODELS_PACKAGE = "org.s30173.models.";
-    public static String MODELS_DIR     = "src/main/java/org/s30173/models";
-    public static String DATA_DIR       = "src/data/";
-    public static String SCRIPTS_DIR    = "src/scripts/";
-
     public static String FRAME_TITLE    = "Modelling framework sample";
+    public static String MONTE_CARLO_SPEC =
+        "draws=10000 twKI=normal:0.01 twKS=normal:0.01 twINW=normal:0.02 twEKS=normal:0.02 twIMP=normal:0.02";
 
     public static final Color BG_COLOR       = new Color(30, 31, 34);
     public static final Color BG_COLOR2      = new Color(43, 45, 48);
@@ -28,4 +26,5 @@ public class Manager {
 
     public static final Dimension FRAME_SIZE     = new Dimension(800, 600);
     public static final Dimension FRAME_MIN_SIZE = new Dimension(750, 400);
+    public static final int COLUMN_WIDTH = 110;
 }
\ No newline at end of file
@@ -2,4 +2,10 @@ package org.s30173.helpers;
 
 public interface Model {
     void run();
-}
\ No newline at end of file
+
+    // recompute only years from 'fromYear' on, when earlier years are known to be unchanged;
+    // models that can't do that simply run everything again
+    default void run(int fromYear) {
+        run();
+    }
+}
@@ -0,0 +1,90 @@
+package org.s30173.helpers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * The model index generated at build time by {@code org.s30173.index.ModelIndexProcessor}: all
+ * {@link Model} implementations and their {@link Bind} fields, so models can be listed from a jar
+ * and bound without scanning source directories or reflecting over fields.
+ * Empty when the classes were compiled without the processor; callers then fall back to the old way.
+ */
+public final class ModelIndex {
+    public static final String RESOURCE = "META-INF/org.s30173/model-index";
+
+    /**
+     * A {@link Bind} field, {@code descriptor} is its JVM type descriptor, e.g. {@code [D}, and
+     * {@code output} is {@link Bind#output}.
+     */
+    public record Field(String name, String descriptor, boolean output) {}
+
+    private static Map<String, List<Field>> index; // class name -> @Bind fields in declaration order
+    private static Map<String, Integer> fieldHashes; // class name -> hash of its instance fields
+
+    private ModelIndex() {}
+
+    public static synchronized Map<String, List<Field>> get() {
+        if (index == null)
+            load(ModelIndex.class.getClassLoader());
+        return index;
+    }
+
+    // sorted class names
+    public static Set<String> modelClassNames() {
+        return get().keySet();
+    }
+
+    // null if the class isn't indexed
+    public static List<Field> bindFields(String modelClassName) {
+        return get().get(modelClassName);
+    }
+
+    /**
+     * The hash of the instance fields the class had when it was indexed, the sum of
+     * {@code (name + ":" + descriptor).hashCode()}; null if the class isn't indexed or the index has none.
+     */
+    public static synchronized Integer fieldHash(String modelClassName) {
+        get();
+        return fieldHashes.get(modelClassName);
+    }
+
+
+    // Helpers
+    private static void load(ClassLoader loader) {
+        Map<String, List<Field>> models = new TreeMap<>();
+        Map<String, Integer> hashes = new HashMap<>();
+        try {
+            for (URL url : Collections.list(loader.getResources(RESOURCE))) {
+                try (BufferedReader r = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = r.readLine()) != null) {
+                        if (line.isBlank() || line.startsWith("#"))
+                            continue;
+
+                        String[] parts = line.trim().split(" ");
+                        if (models.containsKey(parts[0]))
+                            continue; // first on the class path wins
+                        List<Field> fields = new ArrayList<>();
+                        for (int i = 1; i < parts.length; i++) {
+                            if (parts[i].startsWith("#")) {
+                                hashes.put(parts[0], Integer.parseUnsignedInt(parts[i].substring(1), 16));
+                                continue;
+                            }
+                            String[] field = parts[i].split(":"); // name:descriptor[:out]
+                            fields.add(new Field(field[0], field[1], field.length > 2 && field[2].equals("out")));
+                        }
+                        models.put(parts[0], List.copyOf(fields));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading model index: " + RESOURCE, e);
+        }
+        index = Collections.unmodifiableMap(models);
+        fieldHashes = hashes;
+    }
+}
@@ -0,0 +1,47 @@
+package org.s30173.helpers;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.FieldPosition;
+
+/**
+ * Number format of the results table ({@code 1 234 567,8}). The formats are created once per thread
+ * and reused, so formatting a cell only allocates the resulting String.
+ */
+public final class NumberFormatter {
+    private static final ThreadLocal<NumberFormatter> instance = ThreadLocal.withInitial(NumberFormatter::new);
+
+    private final DecimalFormat small;  // < 1
+    private final DecimalFormat medium; // < 1000
+    private final DecimalFormat large;
+    private final StringBuffer buf = new StringBuffer(32);
+    private final FieldPosition pos = new FieldPosition(0);
+
+    private NumberFormatter() {
+        DecimalFormatSymbols symbols = new DecimalFormatSymbols();
+        symbols.setDecimalSeparator(',');
+        symbols.setGroupingSeparator(' ');
+
+        // the number of decimal places depends on the value range
+        small = new DecimalFormat("#,##0.###", symbols);
+        medium = new DecimalFormat("#,##0.##", symbols);
+        large = new DecimalFormat("#,##0.#", symbols);
+    }
+
+    public static String format(double number) {
+        return instance.get().doFormat(number);
+    }
+
+    private String doFormat(double number) {
+        DecimalFormat f = number < 1 ? small : number < 1000 ? medium : large;
+
+        buf.setLength(0);
+        f.format(number, buf, pos);
+
+        int len = buf.length();
+        if (len >= 2 && buf.charAt(len - 2) == ',' && buf.charAt(len - 1) == '0')
+            len -= 2;
+
+        return buf.substring(0, len);
+    }
+}
@@ -0,0 +1,220 @@
+package org.s30173.helpers;
+
+import org.codehaus.groovy.ast.CodeVisitorSupport;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.ModuleNode;
+import org.codehaus.groovy.ast.expr.*;
+import org.codehaus.groovy.ast.stmt.ExpressionStatement;
+import org.codehaus.groovy.ast.stmt.Statement;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.syntax.Types;
+
+import javax.script.ScriptException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The variables a script reads and writes, from its syntax tree. Conservative: assigning a variable or
+ * one of its elements or properties is a write, and so is calling a method on it or passing it to one
+ * (the method may modify it). Loop counters (single lowercase letters) are private to each script and
+ * left out, as {@code Controller} drops them.
+ * <p>
+ * {@code mutates} are the variables whose object is changed in place (all but plain assignments), unless
+ * the script created that object itself ({@code D = new double[LL]} as a statement of its own, and no
+ * other value assigned to {@code D}). Names don't show aliasing: after {@code X = KI}, {@code X[3] = 0}
+ * changes {@code KI}, so such a script can't be run alongside any other.
+ * <p>
+ * Used to find which scripts of a batch can run at the same time, see {@code Controller.runScripts}.
+ */
+public record ScriptAccess(Set<String> reads, Set<String> writes, Set<String> mutates) {
+    private static final AtomicInteger counter = new AtomicInteger();
+
+    public static ScriptAccess of(String script) throws ScriptException {
+        CompilationUnit unit = new CompilationUnit();
+        unit.addSource("ScriptAccess" + counter.incrementAndGet() + ".groovy", script);
+        try {
+            unit.compile(Phases.SEMANTIC_ANALYSIS); // class names resolved, Math.max(...) isn't a variable
+        } catch (CompilationFailedException e) {
+            throw new ScriptException("Error compiling script: " + e.getMessage());
+        }
+
+        // first the variables assigned anything but a new object, then the accesses knowing them
+        Visitor assigned = new Visitor(new HashSet<>());
+        visit(unit, assigned);
+        Visitor visitor = new Visitor(assigned.shared);
+        visit(unit, visitor);
+        return new ScriptAccess(Collections.unmodifiableSet(visitor.reads), Collections.unmodifiableSet(visitor.writes),
+            Collections.unmodifiableSet(visitor.mutates));
+    }
+
+    /**
+     * Whether {@code later}, run after this script, could see a different value when both run at once.
+     * A script changing an object in place may change any variable referencing it, and writing a
+     * {@code @Bind} field ({@code bindNames}) changes whatever the model computes, which script vars may
+     * reference too: either conflicts with every other script.
+     */
+    public boolean conflictsWith(ScriptAccess later, Set<String> bindNames) {
+        if (!mutates.isEmpty() || !later.mutates.isEmpty() || intersects(writes, bindNames))
+            return true;
+        return intersects(writes, later.reads) || intersects(writes, later.writes) || intersects(reads, later.writes);
+    }
+
+    // whether the script may change one of names, in place through another variable included
+    public boolean writesAny(Set<String> names) {
+        return !mutates.isEmpty() || intersects(writes, names);
+    }
+
+
+    // Helpers
+    // statements in order: a variable holds the script's own object after the top-level statement creating it
+    private static void visit(CompilationUnit unit, Visitor visitor) {
+        for (ModuleNode module : unit.getAST().getModules()) {
+            for (Statement statement : module.getStatementBlock().getStatements()) {
+                statement.visit(visitor);
+                visitor.created(statement);
+            }
+            visitor.own.clear(); // methods may run before any of it
+            for (MethodNode method : module.getMethods())
+                method.getCode().visit(visitor);
+        }
+    }
+
+    private static final class Visitor extends CodeVisitorSupport {
+        final Set<String> reads = new LinkedHashSet<>();
+        final Set<String> writes = new LinkedHashSet<>();
+        final Set<String> mutates = new LinkedHashSet<>();
+        final Set<String> shared; // assigned anything but a new object somewhere
+        final Set<String> own = new HashSet<>(); // holding an object the script created, so far
+
+        Visitor(Set<String> shared) {
+            this.shared = shared;
+        }
+
+        @Override
+        public void visitVariableExpression(VariableExpression expression) {
+            add(reads, expression.getName());
+        }
+
+        @Override
+        public void visitBinaryExpression(BinaryExpression expression) {
+            Expression left = expression.getLeftExpression();
+            if (Types.ofType(expression.getOperation().getType(), Types.ASSIGNMENT_OPERATOR)) {
+                if (left instanceof TupleExpression tuple) { // def (a, b) = ...
+                    tuple.getExpressions().forEach(e -> add(writes, target(e)));
+                    tuple.getExpressions().forEach(e -> add(shared, target(e)));
+                } else if (left instanceof VariableExpression v) {
+                    add(writes, v.getName());
+                    if (expression.getOperation().getType() != Types.ASSIGN || !isNew(expression.getRightExpression()))
+                        add(shared, v.getName());
+                } else {
+                    add(writes, target(left));
+                    mutated(target(left));
+                }
+            } else if (expression.getOperation().getType() == Types.LEFT_SHIFT) { // list << value
+                add(writes, target(left));
+                mutated(target(left));
+            }
+            super.visitBinaryExpression(expression);
+        }
+
+        @Override
+        public void visitPostfixExpression(PostfixExpression expression) {
+            changed(expression.getExpression());
+            super.visitPostfixExpression(expression);
+        }
+
+        @Override
+        public void visitPrefixExpression(PrefixExpression expression) {
+            changed(expression.getExpression());
+            super.visitPrefixExpression(expression);
+        }
+
+        @Override
+        public void visitMethodCallExpression(MethodCallExpression call) {
+            if (!call.isImplicitThis()) {
+                add(writes, target(call.getObjectExpression()));
+                mutated(target(call.getObjectExpression()));
+            }
+            arguments(call.getArguments());
+            super.visitMethodCallExpression(call);
+        }
+
+        @Override
+        public void visitStaticMethodCallExpression(StaticMethodCallExpression call) {
+            arguments(call.getArguments());
+            super.visitStaticMethodCallExpression(call);
+        }
+
+        @Override
+        public void visitConstructorCallExpression(ConstructorCallExpression call) {
+            arguments(call.getArguments());
+            super.visitConstructorCallExpression(call);
+        }
+
+        private void arguments(Expression arguments) {
+            if (arguments instanceof TupleExpression tuple) {
+                for (Expression argument : tuple.getExpressions()) {
+                    add(writes, target(argument));
+                    mutated(target(argument));
+                }
+            }
+        }
+
+        // X++ gives X a new value, X[t]++ changes the object of X
+        private void changed(Expression e) {
+            add(writes, target(e));
+            if (!(e instanceof VariableExpression))
+                mutated(target(e));
+        }
+
+        private void mutated(String name) {
+            if (name != null && !own.contains(name))
+                add(mutates, name);
+        }
+
+        // D = new double[LL] as a statement of its own
+        void created(Statement statement) {
+            if (statement instanceof ExpressionStatement s && s.getExpression() instanceof BinaryExpression b &&
+                b.getOperation().getType() == Types.ASSIGN && b.getLeftExpression() instanceof VariableExpression v &&
+                isNew(b.getRightExpression()) && !shared.contains(v.getName()))
+                own.add(v.getName());
+        }
+
+        private static boolean isNew(Expression e) {
+            return e instanceof ArrayExpression || e instanceof ListExpression || e instanceof MapExpression ||
+                e instanceof ConstructorCallExpression || e instanceof ConstantExpression;
+        }
+
+        // the variable an assignment, PKB[t] or PKB.x included, ends up modifying
+        private static String target(Expression e) {
+            if (e instanceof VariableExpression v)
+                return v.getName();
+            if (e instanceof BinaryExpression b && b.getOperation().getType() == Types.LEFT_SQUARE_BRACKET)
+                return target(b.getLeftExpression());
+            if (e instanceof PropertyExpression p)
+                return target(p.getObjectExpression());
+            return null;
+        }
+
+        private static void add(Set<String> names, String name) {
+            if (name == null || name.equals("this") || name.equals("super"))
+                return;
+            if (name.length() == 1 && Character.isLetter(name.charAt(0)) && Character.isLowerCase(name.charAt(0)))
+                return;
+            names.add(name);
+        }
+    }
+
+    private static boolean intersects(Set<String> a, Set<String> b) {
+        for (String name : a) {
+            if (b.contains(name))
+                return true;
+        }
+        return false;
+    }
+}
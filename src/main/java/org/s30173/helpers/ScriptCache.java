@@ -0,0 +1,105 @@
+package org.s30173.helpers;
+
+import javax.script.CompiledScript;
+import javax.script.ScriptException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of compiled scripts, shared by all controllers and keyed by the SHA-256 of the
+ * script text. A repeated script only pays for evaluation, not for parsing and class generation.
+ * Every entry has a class loader of its own, so the classes of an evicted script can be unloaded.
+ */
+public class ScriptCache {
+    private static final Map<String, CompiledScript> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompiledScript> eldest) {
+            if (size() <= SCRIPT_CACHE_SIZE)
+                return false;
+            GroovyEngines.unload(eldest.getValue());
+            return true;
+        }
+    };
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    public static int SCRIPT_CACHE_SIZE = 64;
+
+    private ScriptCache() {}
+
+    // compiled only on a miss, see EnginePool.compile
+    public static CompiledScript get(EnginePool engines, String script) throws ScriptException {
+        return get(script, () -> engines.compile(script));
+    }
+
+    // @CompileStatic against the given variable types, see StaticScripts
+    public static CompiledScript getStatic(Map<String, Class<?>> types, String script) throws ScriptException {
+        return get(StaticScripts.signature(types) + script, () -> StaticScripts.compile(script, types));
+    }
+
+    public static long hits() {
+        return hits.get();
+    }
+
+    public static long misses() {
+        return misses.get();
+    }
+
+    public static int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public static void clear() {
+        synchronized (cache) {
+            cache.values().forEach(GroovyEngines::unload);
+            cache.clear();
+        }
+    }
+
+    public static String stats() {
+        return "scripts cached: " + size() + ", hits: " + hits() + ", misses: " + misses();
+    }
+
+
+    // Helpers
+    private interface Compiler {
+        CompiledScript compile() throws ScriptException;
+    }
+
+    private static CompiledScript get(String text, Compiler compiler) throws ScriptException {
+        String key = hash(text);
+
+        synchronized (cache) {
+            CompiledScript compiled = cache.get(key);
+            if (compiled != null) {
+                hits.incrementAndGet();
+                return compiled;
+            }
+        }
+
+        misses.incrementAndGet();
+        CompiledScript compiled = compiler.compile(); // compile outside the lock
+
+        synchronized (cache) {
+            CompiledScript prev = cache.putIfAbsent(key, compiled);
+            return prev != null ? prev : compiled;
+        }
+    }
+
+    private static String hash(String script) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(script.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        }
+    }
+}
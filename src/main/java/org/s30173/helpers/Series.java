@@ -0,0 +1,64 @@
+package org.s30173.helpers;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * A series of doubles held in a {@link MemorySegment}: off-heap, in a mapped file or over a heap array,
+ * see {@link SeriesStorage}. A {@link Bind} field of this type is bound without a heap copy, which is
+ * what very long horizons and large series counts need. Scripts index it like an array
+ * ({@code PKB[t]}, via {@code getAt}/{@code putAt}), statically compiled ones with primitive calls.
+ * <p>
+ * The segment belongs to the storage scope of the run: after the scope is closed the series can't be read.
+ */
+public final class Series {
+    private final MemorySegment segment;
+    private final int length;
+
+    public Series(MemorySegment segment) {
+        this.segment = segment;
+        this.length = Math.toIntExact(segment.byteSize() / Double.BYTES);
+    }
+
+    public static Series wrap(double[] values) {
+        return new Series(MemorySegment.ofArray(values));
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public double get(int i) {
+        return segment.getAtIndex(ValueLayout.JAVA_DOUBLE, i);
+    }
+
+    public void set(int i, double value) {
+        segment.setAtIndex(ValueLayout.JAVA_DOUBLE, i, value);
+    }
+
+    public MemorySegment segment() {
+        return segment;
+    }
+
+    public double[] toArray() {
+        return segment.toArray(ValueLayout.JAVA_DOUBLE);
+    }
+
+    // Groovy: PKB[t], PKB[t] = v and PKB.size()
+    public double getAt(int i) {
+        return get(i);
+    }
+
+    public void putAt(int i, double value) {
+        set(i, value);
+    }
+
+    public int size() {
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return "Series[" + length + "]";
+    }
+}
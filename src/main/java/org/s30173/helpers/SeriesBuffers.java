@@ -0,0 +1,91 @@
+package org.s30173.helpers;
+
+import java.lang.foreign.MemorySegment;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The series of a model's {@link Bind} fields kept across runs: allocated once for a number of years
+ * and refilled from the data in place after that, so re-running on data of the same length allocates
+ * nothing. {@code double[]} buffers live on the heap, {@link Series} ones in the scope they were
+ * allocated in, which must stay open as long as {@link #fits} says they are reused.
+ * <p>
+ * Fields declared {@code @Bind(output = true)} are filled from the data only when allocated; after that
+ * they hold what the model computed last, and the next run overwrites it.
+ */
+public final class SeriesBuffers {
+    private final List<BindField> fields;
+    private final Object[] buffers; // per field: double[], Series, or null for LL
+    private int years = -1;
+
+    public SeriesBuffers(BindFields fields) {
+        this.fields = fields.list();
+        this.buffers = new Object[this.fields.size()];
+    }
+
+    // whether bind() reuses the buffers for this many years, otherwise it allocates new ones
+    public boolean fits(int years) {
+        return this.years == years;
+    }
+
+    // same values as BindFields.bindSegments, new Series only when the length changed
+    public void bind(Model model, int years, Map<String, MemorySegment> data, SeriesStorage.Scope scope) {
+        boolean allocate = !fits(years);
+        for (int i = 0; i < fields.size(); i++) {
+            BindField field = fields.get(i);
+            MemorySegment values = data.get(field.name());
+            if (field.name().equals("LL")) {
+                field.setInt(model, years);
+            } else if (field.isSeries()) {
+                if (allocate)
+                    buffers[i] = BindFields.prepareSeries(values, years, scope);
+                else if (!field.isOutput())
+                    BindFields.fill(values, series(i, years));
+                field.setSeries(model, (Series) buffers[i]);
+            } else {
+                if (allocate)
+                    buffers[i] = BindFields.prepareArray(values, years);
+                else if (!field.isOutput())
+                    BindFields.fill(values, doubles(i, years));
+                field.setDoubles(model, (double[]) buffers[i]);
+            }
+        }
+        this.years = years;
+    }
+
+    // whether the value is one of the buffers, so refilling them would change it
+    public boolean owns(Object value) {
+        if (value == null)
+            return false;
+        for (Object buffer : buffers) {
+            if (buffer == value)
+                return true;
+        }
+        return false;
+    }
+
+    // the next bind() allocates again, e.g. in another storage
+    public void clear() {
+        Arrays.fill(buffers, null);
+        years = -1;
+    }
+
+
+    // Helpers
+    private double[] doubles(int i, int years) {
+        double[] buffer = (double[]) buffers[i];
+        if (buffer.length != years)
+            throw new IllegalStateException("Buffer of " + fields.get(i).name() + " holds " + buffer.length +
+                " years, not " + years);
+        return buffer;
+    }
+
+    private Series series(int i, int years) {
+        Series buffer = (Series) buffers[i];
+        if (buffer.length() != years)
+            throw new IllegalStateException("Buffer of " + fields.get(i).name() + " holds " + buffer.length() +
+                " years, not " + years);
+        return buffer;
+    }
+}
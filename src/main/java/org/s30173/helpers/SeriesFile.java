@@ -0,0 +1,196 @@
+package org.s30173.helpers;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary columnar file of named {@code double} series, little-endian throughout:
+ * <pre>
+ *   "UTPS"  int32 version  int32 years  int32 seriesCount
+ *   years x       (int32 byteLength, UTF-8 LATA year)
+ *   seriesCount x (int32 byteLength, UTF-8 name, int64 offset, int32 length)
+ *   padding to 8 bytes, then every series as length doubles at its offset
+ * </pre>
+ * Each series is contiguous and 8-byte aligned, so a reader can take it straight from a mapped file.
+ * <p>
+ * Besides exported results this is the snapshot format for data files: {@link #convert} turns a text
+ * data file into one and {@link #map} loads it without parsing or copying.
+ */
+public class SeriesFile {
+    public static final int MAGIC = 'U' | 'T' << 8 | 'P' << 16 | 'S' << 24;
+    public static final int VERSION = 1;
+
+    private static final int CHUNK = 1 << 16;
+
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfDouble DOUBLE = ValueLayout.JAVA_DOUBLE.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfDouble DOUBLE_UNALIGNED = DOUBLE.withByteAlignment(1); // in a byte[] buffer
+
+    /**
+     * Series as read-only segments readable with {@link ValueLayout#JAVA_DOUBLE}. From {@link #map}
+     * they are views of the mapped file, which stays mapped while any of them is reachable.
+     */
+    public record Snapshot(String[] lata, Map<String, MemorySegment> series) {
+        // heap copy, for code that works on double[]
+        public Dataset toDataset() {
+            Map<String, double[]> arrays = new LinkedHashMap<>();
+            series.forEach((name, values) -> arrays.put(name, values.toArray(ValueLayout.JAVA_DOUBLE)));
+            return new Dataset(lata, arrays);
+        }
+    }
+
+    private SeriesFile() {}
+
+    public static boolean isSeriesFile(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() < 4)
+                return false;
+            ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            while (magic.hasRemaining())
+                ch.read(magic, magic.position());
+            return magic.getInt(0) == MAGIC;
+        }
+    }
+
+    public static Snapshot map(Path file) throws IOException {
+        MemorySegment seg;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            seg = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size(), Arena.ofAuto()).asReadOnly();
+        }
+
+        try {
+            if (seg.byteSize() < 16 || seg.get(INT, 0) != MAGIC)
+                throw new IOException("Not a series file: " + file);
+            if (seg.get(INT, 4) != VERSION)
+                throw new IOException("Unsupported series file version " + seg.get(INT, 4) + ": " + file);
+
+            int years = seg.get(INT, 8);
+            int count = seg.get(INT, 12);
+            long pos = 16;
+
+            String[] lata = new String[years];
+            for (int i = 0; i < years; i++) {
+                int len = seg.get(INT, pos);
+                lata[i] = string(seg, pos + 4, len);
+                pos += 4 + len;
+            }
+
+            // the data is little-endian, elsewhere it's converted to heap arrays once
+            boolean view = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+            Map<String, MemorySegment> series = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                int len = seg.get(INT, pos);
+                String name = string(seg, pos + 4, len);
+                pos += 4 + len;
+                long offset = seg.get(LONG, pos);
+                int length = seg.get(INT, pos + 8);
+                pos += 12;
+
+                MemorySegment values = seg.asSlice(offset, (long) length * Double.BYTES);
+                series.put(name, view ? values : MemorySegment.ofArray(values.toArray(DOUBLE)));
+            }
+            return new Snapshot(lata, Collections.unmodifiableMap(series));
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Truncated series file: " + file, e);
+        }
+    }
+
+    // text data file -> snapshot, written next to the target and moved into place
+    public static void convert(Path dataFile, Path snapshot) throws IOException {
+        Dataset data = DataParser.parse(dataFile);
+        if (data.lata() == null)
+            throw new IOException("No LATA header in data file: " + dataFile);
+
+        Path dir = snapshot.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, snapshot.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                Map<String, MemorySegment> series = new LinkedHashMap<>();
+                data.series().forEach((name, values) -> series.put(name, MemorySegment.ofArray(values)));
+                write(ch, data.lata(), series);
+            }
+            Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // series readable with JAVA_DOUBLE (arrays, off-heap or mapped), returns the number of bytes written
+    public static long write(WritableByteChannel ch, String[] lata, Map<String, MemorySegment> series) throws IOException {
+        List<byte[]> years = new ArrayList<>();
+        for (String y : lata)
+            years.add(y.getBytes(StandardCharsets.UTF_8));
+        List<byte[]> names = new ArrayList<>();
+        for (String name : series.keySet())
+            names.add(name.getBytes(StandardCharsets.UTF_8));
+
+        long headerSize = 16;
+        for (byte[] y : years)
+            headerSize += 4 + y.length;
+        for (byte[] n : names)
+            headerSize += 4 + n.length + 8 + 4;
+        long dataStart = align(headerSize);
+
+        ByteBuffer header = ByteBuffer.allocate(Math.toIntExact(dataStart)).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(lata.length).putInt(series.size());
+        for (byte[] y : years)
+            header.putInt(y.length).put(y);
+
+        long offset = dataStart;
+        int i = 0;
+        for (MemorySegment values : series.values()) {
+            byte[] n = names.get(i++);
+            int length = Math.toIntExact(values.byteSize() / Double.BYTES);
+            header.putInt(n.length).put(n).putLong(offset).putInt(length);
+            offset += (long) length * Double.BYTES;
+        }
+        header.position(header.capacity()).flip();
+        writeFully(ch, header);
+
+        // copied a chunk at a time, swapping bytes only on big-endian platforms
+        ByteBuffer data = ByteBuffer.allocate(CHUNK);
+        MemorySegment chunk = MemorySegment.ofBuffer(data);
+        for (MemorySegment values : series.values()) {
+            long n = values.byteSize() / Double.BYTES;
+            for (long from = 0; from < n; from += CHUNK / Double.BYTES) {
+                int count = (int) Math.min(CHUNK / Double.BYTES, n - from);
+                MemorySegment.copy(values, ValueLayout.JAVA_DOUBLE, from * Double.BYTES, chunk, DOUBLE_UNALIGNED, 0, count);
+                data.clear().limit(count * Double.BYTES);
+                writeFully(ch, data);
+            }
+        }
+        return offset;
+    }
+
+
+    // Helpers
+    static long align(long pos) {
+        return (pos + 7) & ~7L;
+    }
+
+    private static String string(MemorySegment seg, long from, int len) {
+        return new String(seg.asSlice(from, len).toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+    }
+
+    private static void writeFully(WritableByteChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining())
+            ch.write(buf);
+    }
+}
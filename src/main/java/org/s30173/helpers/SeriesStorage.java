@@ -0,0 +1,103 @@
+package org.s30173.helpers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Where the {@link Series} of a run live. Every run opens a {@link Scope} and all series bound or
+ * snapshotted for it are allocated there; closing the scope frees them at once.
+ * <ul>
+ *   <li>{@link #HEAP}: over {@code double[]}, the default</li>
+ *   <li>{@link #OFF_HEAP}: native memory in a shared {@link Arena}, outside the GC heap</li>
+ *   <li>{@link #files}: temporary files mapped read-write, for data larger than RAM (the OS pages them)</li>
+ * </ul>
+ * Only {@code Series} fields use the storage, {@code double[]} fields stay on the heap.
+ */
+public interface SeriesStorage {
+    interface Scope extends AutoCloseable {
+        // zero-filled
+        Series allocate(int length);
+
+        @Override
+        void close();
+    }
+
+    SeriesStorage HEAP = () -> new Scope() {
+        @Override
+        public Series allocate(int length) {
+            return Series.wrap(new double[length]);
+        }
+
+        @Override
+        public void close() {}
+    };
+
+    SeriesStorage OFF_HEAP = () -> new Scope() {
+        private final Arena arena = Arena.ofShared();
+
+        @Override
+        public Series allocate(int length) {
+            return new Series(arena.allocate((long) length * Double.BYTES, Double.BYTES));
+        }
+
+        @Override
+        public void close() {
+            arena.close();
+        }
+    };
+
+    Scope open();
+
+    static SeriesStorage files(Path dir) {
+        return () -> new Scope() {
+            private final Arena arena = Arena.ofShared();
+            private final List<Path> files = new ArrayList<>();
+
+            @Override
+            public synchronized Series allocate(int length) {
+                try {
+                    Path file = Files.createTempFile(dir, "series", ".bin");
+                    files.add(file);
+                    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                        MemorySegment seg = ch.map(FileChannel.MapMode.READ_WRITE, 0, (long) length * Double.BYTES, arena);
+                        return new Series(seg);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Error allocating a series file in: " + dir, e);
+                }
+            }
+
+            @Override
+            public synchronized void close() {
+                arena.close();
+                for (Path file : files) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        file.toFile().deleteOnExit();
+                    }
+                }
+                files.clear();
+            }
+        };
+    }
+
+    // "heap", "offheap" or "file:<dir>"
+    static SeriesStorage parse(String spec) {
+        if (spec.equals("heap"))
+            return HEAP;
+        if (spec.equals("offheap"))
+            return OFF_HEAP;
+        if (spec.startsWith("file:"))
+            return files(Path.of(spec.substring("file:".length())));
+        throw new IllegalArgumentException("Unknown series storage (heap, offheap or file:<dir>): " + spec);
+    }
+}
@@ -0,0 +1,216 @@
+package org.s30173.helpers;
+
+import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.Script;
+import groovy.transform.CompileStatic;
+import groovy.transform.ThreadInterrupt;
+import org.codehaus.groovy.ast.ClassHelper;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.Parameter;
+import org.codehaus.groovy.ast.expr.DeclarationExpression;
+import org.codehaus.groovy.ast.expr.EmptyExpression;
+import org.codehaus.groovy.ast.expr.Expression;
+import org.codehaus.groovy.ast.expr.VariableExpression;
+import org.codehaus.groovy.ast.stmt.BlockStatement;
+import org.codehaus.groovy.ast.stmt.ExpressionStatement;
+import org.codehaus.groovy.ast.stmt.Statement;
+import org.codehaus.groovy.ast.stmt.TryCatchStatement;
+import org.codehaus.groovy.classgen.GeneratorContext;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilePhase;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.MultipleCompilationErrorsException;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.customizers.ASTTransformationCustomizer;
+import org.codehaus.groovy.control.customizers.CompilationCustomizer;
+import org.codehaus.groovy.control.messages.Message;
+import org.codehaus.groovy.control.messages.SyntaxErrorMessage;
+import org.codehaus.groovy.runtime.InvokerHelper;
+
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.codehaus.groovy.ast.tools.GeneralUtils.*;
+
+/**
+ * Scripts compiled with {@code @CompileStatic}. The variables a script can see ({@code @Bind} fields and
+ * earlier script vars) are declared to the compiler as typed locals read from the bindings at the start,
+ * so e.g. {@code PKB[t] / PKB[0]} on a {@code double[]} compiles to primitive bytecode.
+ * <p>
+ * Top-level typed declarations ({@code double[] DPKB = new double[LL]}) become new script vars and every
+ * variable is written back to the bindings when the script ends, also by a {@code return} or an exception,
+ * so results are the same as in dynamic mode.
+ * Everything else must be typeable too: loop variables are declared ({@code for (int t = 0; ...)}),
+ * otherwise compiling fails with the type checker's messages.
+ */
+public final class StaticScripts {
+    private static final AtomicInteger counter = new AtomicInteger();
+
+    private StaticScripts() {}
+
+    // the variable types are part of the compiled code, scripts are cached per script and types
+    public static String signature(Map<String, Class<?>> types) {
+        StringBuilder sb = new StringBuilder("// @CompileStatic");
+        types.forEach((name, type) -> sb.append(' ').append(name).append(':').append(type.getName()));
+        return sb.append('\n').toString();
+    }
+
+    public static CompiledScript compile(String script, Map<String, Class<?>> types) throws ScriptException {
+        CompilerConfiguration config = new CompilerConfiguration();
+        config.addCompilationCustomizers(
+            new TypedVariables(types),
+            new ASTTransformationCustomizer(CompileStatic.class),
+            new ASTTransformationCustomizer(ThreadInterrupt.class)); // see GroovyEngines
+
+        GroovyClassLoader loader = new GroovyClassLoader(StaticScripts.class.getClassLoader(), config);
+        try {
+            Class<?> cls = loader.parseClass(script, "StaticScript" + counter.incrementAndGet() + ".groovy");
+            return new Compiled(cls.asSubclass(Script.class), loader);
+        } catch (MultipleCompilationErrorsException e) {
+            throw new ScriptException("Script is not statically typeable:\n" + messages(e));
+        } catch (CompilationFailedException e) {
+            throw new ScriptException("Error compiling script: " + e.getMessage());
+        }
+    }
+
+    // variable types for compile(): the declared type, or for values the public class (Object otherwise)
+    public static Class<?> typeOf(Object value) {
+        if (value == null)
+            return Object.class;
+        Class<?> c = value.getClass();
+        while (c != null && !Modifier.isPublic(c.getModifiers()))
+            c = c.getSuperclass();
+        return c != null ? c : Object.class;
+    }
+
+
+    // Helpers
+    static final class Compiled extends CompiledScript {
+        private final Class<? extends Script> cls;
+        final GroovyClassLoader loader; // see GroovyEngines.unload
+
+        Compiled(Class<? extends Script> cls, GroovyClassLoader loader) {
+            this.cls = cls;
+            this.loader = loader;
+        }
+
+        @Override
+        public Object eval(ScriptContext context) throws ScriptException {
+            Binding binding = new Binding(context.getBindings(ScriptContext.ENGINE_SCOPE)); // writes go through
+            try {
+                return InvokerHelper.createScript(cls, binding).run();
+            } catch (Exception e) {
+                ScriptException se = new ScriptException(e.toString());
+                se.initCause(e);
+                throw se;
+            }
+        }
+
+        @Override
+        public ScriptEngine getEngine() {
+            return null; // compiled without an engine
+        }
+    }
+
+    // Prepends "T name = (T) getBinding().getVariable('name')" for every known variable, moves top-level
+    // declarations up there as well and runs the script in a try whose finally writes all of them back.
+    // Runs at CONVERSION, before variables are resolved, so the script's references bind to the locals.
+    private static final class TypedVariables extends CompilationCustomizer {
+        private final Map<String, Class<?>> types;
+
+        TypedVariables(Map<String, Class<?>> types) {
+            super(CompilePhase.CONVERSION);
+            this.types = types;
+        }
+
+        @Override
+        public void call(SourceUnit source, GeneratorContext context, ClassNode classNode) {
+            if (!classNode.isScript())
+                return;
+            MethodNode run = classNode.getMethod("run", Parameter.EMPTY_ARRAY);
+            if (run == null || !(run.getCode() instanceof BlockStatement body))
+                return;
+
+            Set<String> declared = new LinkedHashSet<>();
+            for (Statement s : body.getStatements()) {
+                String name = declaredName(s);
+                if (name != null && !isTemporary(name))
+                    declared.add(name);
+            }
+
+            // a script that declares a known variable again (e.g. run twice) replaces it
+            List<Statement> statements = new ArrayList<>();
+            types.forEach((name, type) -> {
+                if (declared.contains(name))
+                    return;
+                ClassNode t = ClassHelper.make(type);
+                statements.add(declS(new VariableExpression(name, t),
+                    castX(t, callX(callThisX("getBinding"), "getVariable", constX(name)))));
+            });
+            // "T name = value" becomes "T name" up here and "name = value" in place, in scope of the finally
+            BlockStatement script = new BlockStatement();
+            for (Statement s : body.getStatements()) {
+                String name = declaredName(s);
+                if (name == null || !declared.contains(name)) {
+                    script.addStatement(s);
+                    continue;
+                }
+                DeclarationExpression d = (DeclarationExpression) ((ExpressionStatement) s).getExpression();
+                statements.add(declS(new VariableExpression(name, d.getVariableExpression().getOriginType()),
+                    EmptyExpression.INSTANCE));
+                if (d.getRightExpression() instanceof EmptyExpression)
+                    continue; // "T name" alone
+                Statement assign = stmt(assignX(new VariableExpression(name), d.getRightExpression()));
+                assign.setSourcePosition(s);
+                script.addStatement(assign);
+            }
+
+            BlockStatement writeBack = new BlockStatement();
+            Set<String> exported = new LinkedHashSet<>(types.keySet());
+            exported.addAll(declared);
+            for (String name : exported)
+                writeBack.addStatement(export(name));
+            statements.add(new TryCatchStatement(script, writeBack));
+
+            body.getStatements().clear();
+            body.addStatements(statements);
+        }
+
+        // top-level "T name = ..." only
+        private static String declaredName(Statement s) {
+            if (s instanceof ExpressionStatement es && es.getExpression() instanceof DeclarationExpression d &&
+                !d.isMultipleAssignmentDeclaration())
+                return d.getVariableExpression().getName();
+            return null;
+        }
+
+        private static Statement export(String name) {
+            Expression value = new VariableExpression(name);
+            return stmt(callX(callThisX("getBinding"), "setVariable", args(constX(name), value)));
+        }
+
+        // same rule as Controller: single lowercase letters are loop counters and get dropped
+        private static boolean isTemporary(String name) {
+            return name.length() == 1 && Character.isLetter(name.charAt(0)) && Character.isLowerCase(name.charAt(0));
+        }
+    }
+
+    private static String messages(MultipleCompilationErrorsException e) {
+        StringBuilder sb = new StringBuilder();
+        for (Message m : e.getErrorCollector().getErrors()) {
+            if (m instanceof SyntaxErrorMessage sm)
+                sb.append(sm.getCause().getMessage());
+            else
+                sb.append(m);
+            sb.append('\n');
+        }
+        return sb.toString().strip();
+    }
+}
@@ -0,0 +1,119 @@
+package org.s30173.helpers;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes result rows as TSV through a small reused buffer, to an {@link Appendable} or a byte channel.
+ * Doubles are appended directly ({@code StringBuilder.append(double)}, same text as {@link Double#toString}),
+ * so no String is created per value and no row is ever held in memory as a whole.
+ */
+public class TsvWriter implements Flushable {
+    private static final int FLUSH_AT = 1 << 16;
+
+    private final StringBuilder buf = new StringBuilder(FLUSH_AT + 64);
+    private final Appendable out;
+    private final WritableByteChannel channel;
+    private final CharsetEncoder encoder;
+    private final ByteBuffer bytes;
+    private long written;
+
+    public TsvWriter(Appendable out) {
+        this.out = out;
+        this.channel = null;
+        this.encoder = null;
+        this.bytes = null;
+    }
+
+    public TsvWriter(WritableByteChannel channel) {
+        this.out = null;
+        this.channel = channel;
+        this.encoder = StandardCharsets.UTF_8.newEncoder();
+        this.bytes = ByteBuffer.allocate(FLUSH_AT * 3);
+    }
+
+    public TsvWriter row(String name, String[] values) throws IOException {
+        buf.append(name).append('\t');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0)
+                buf.append('\t');
+            buf.append(values[i]);
+            drainIfFull();
+        }
+        buf.append('\n');
+        return this;
+    }
+
+    // null is written as NULL, double[] and Series value by value, anything else as toString()
+    public TsvWriter row(String name, Object value) throws IOException {
+        buf.append(name).append('\t');
+        if (value == null) {
+            buf.append("NULL");
+        } else if (value instanceof double[] v) {
+            for (int i = 0; i < v.length; i++) {
+                if (i > 0)
+                    buf.append('\t');
+                buf.append(v[i]);
+                drainIfFull();
+            }
+        } else if (value instanceof Series v) {
+            for (int i = 0; i < v.length(); i++) {
+                if (i > 0)
+                    buf.append('\t');
+                buf.append(v.get(i));
+                drainIfFull();
+            }
+        } else {
+            buf.append(value);
+        }
+        buf.append('\n');
+        drainIfFull();
+        return this;
+    }
+
+    // chars appended to the Appendable, or bytes written to the channel, so far
+    public long written() {
+        return written;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        if (out instanceof Flushable f)
+            f.flush();
+    }
+
+
+    // Helpers
+    private void drainIfFull() throws IOException {
+        if (buf.length() >= FLUSH_AT)
+            drain();
+    }
+
+    private void drain() throws IOException {
+        if (out != null) {
+            out.append(buf);
+            written += buf.length();
+            buf.setLength(0);
+            return;
+        }
+
+        CharBuffer chars = CharBuffer.wrap(buf);
+        CoderResult r;
+        do {
+            r = encoder.encode(chars, bytes, false);
+            bytes.flip();
+            written += bytes.remaining();
+            while (bytes.hasRemaining())
+                channel.write(bytes);
+            bytes.clear();
+        } while (r.isOverflow());
+        buf.delete(0, chars.position()); // keeps a surrogate split across buffers
+    }
+}
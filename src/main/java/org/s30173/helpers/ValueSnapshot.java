@@ -0,0 +1,106 @@
+package org.s30173.helpers;
+
+import java.lang.foreign.MemorySegment;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Copies of named values as they were last seen, used to find what a script changed.
+ * Arrays are copied, {@link Series} into the current storage scope, strings and boxed numbers are kept
+ * as they are (immutable), any other value as its {@code toString()} (that is what the table shows).
+ */
+public class ValueSnapshot {
+    private final Map<String, Object> values = new HashMap<>();
+    private final Map<String, Object> refs = new HashMap<>();
+    private SeriesStorage.Scope scope = SeriesStorage.HEAP.open();
+
+    // where Series are copied to from now on, the owner closes it (and the copies in it with it)
+    public void scope(SeriesStorage.Scope scope) {
+        this.scope = scope;
+        clear();
+    }
+
+    // a copy of the same length is overwritten in place
+    public void put(String name, Object value) {
+        Object old = values.get(name);
+        if (value instanceof double[] v && old instanceof double[] o && o.length == v.length)
+            System.arraycopy(v, 0, o, 0, v.length);
+        else if (value instanceof int[] v && old instanceof int[] o && o.length == v.length)
+            System.arraycopy(v, 0, o, 0, v.length);
+        else if (value instanceof Series v && old instanceof Series o && o.length() == v.length())
+            MemorySegment.copy(v.segment(), 0, o.segment(), 0, v.segment().byteSize()); // scopes only grow
+        else
+            values.put(name, copy(value));
+        refs.put(name, value);
+    }
+
+    // whether the snapshot was taken of this very object (equal contents may still be another array)
+    public boolean isSameReference(String name, Object value) {
+        return refs.containsKey(name) && refs.get(name) == value;
+    }
+
+    public boolean contains(String name) {
+        return values.containsKey(name);
+    }
+
+    public Object get(String name) {
+        return values.get(name);
+    }
+
+    public void remove(String name) {
+        values.remove(name);
+        refs.remove(name);
+    }
+
+    public void clear() {
+        values.clear();
+        refs.clear();
+    }
+
+    /**
+     * @return -1 if {@code value} equals the snapshot, otherwise the first index that differs
+     *         (0 for new names, non-array values and arrays of a different length)
+     */
+    public int mismatch(String name, Object value) {
+        if (!values.containsKey(name))
+            return 0;
+
+        Object old = values.get(name);
+        if (old instanceof double[] o && value instanceof double[] v)
+            return o.length == v.length ? Arrays.mismatch(o, v) : 0;
+        if (old instanceof int[] o && value instanceof int[] v)
+            return o.length == v.length ? Arrays.mismatch(o, v) : 0;
+        if (old instanceof Series o && value instanceof Series v)
+            return o.length() == v.length() ? mismatch(o.segment(), v.segment()) : 0;
+        if (old instanceof Series || value instanceof Series)
+            return 0;
+
+        return copy(value).equals(old) ? -1 : 0;
+    }
+
+    private Object copy(Object value) {
+        if (value == null)
+            return "NULL";
+        if (value instanceof double[] v)
+            return v.clone();
+        if (value instanceof int[] v)
+            return v.clone();
+        if (value instanceof Series v) {
+            Series copy = scope.allocate(v.length());
+            MemorySegment.copy(v.segment(), 0, copy.segment(), 0, v.segment().byteSize());
+            return copy;
+        }
+        if (value instanceof String || value instanceof Integer || value instanceof Long || value instanceof Double ||
+            value instanceof BigDecimal || value instanceof BigInteger || value instanceof Boolean)
+            return value;
+        return value.toString();
+    }
+
+    private static int mismatch(MemorySegment a, MemorySegment b) {
+        long bytes = MemorySegment.mismatch(a, 0, a.byteSize(), b, 0, b.byteSize());
+        return bytes < 0 ? -1 : (int) (bytes / Double.BYTES);
+    }
+}
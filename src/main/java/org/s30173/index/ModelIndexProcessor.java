@@ -0,0 +1,143 @@
+package org.s30173.index;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Writes {@code META-INF/org.s30173/model-index}: every concrete {@code Model} implementation of the
+ * compilation with its {@code @Bind} fields in declaration order, one model per line:
+ * <pre>
+ *   org.s30173.models.Model1 #5f1c09a2 LL:I twKI:[D ...
+ * </pre>
+ * Field types are JVM descriptors, {@code @Bind(output = true)} fields get a {@code :out} suffix
+ * ({@code PKB:[D:out}). The {@code #} word is a hash of all instance fields of the class (names and
+ * descriptors), which the runtime compares to the loaded class to notice an index older than the class.
+ * Read at runtime by {@code org.s30173.helpers.ModelIndex}.
+ * <p>
+ * Compiled in its own pass before the rest of the sources, see the compiler executions in pom.xml.
+ */
+@SupportedAnnotationTypes("*")
+public class ModelIndexProcessor extends AbstractProcessor {
+    static final String RESOURCE = "META-INF/org.s30173/model-index";
+
+    private static final String MODEL = "org.s30173.helpers.Model";
+    private static final String BIND = "org.s30173.helpers.Bind";
+
+    private final Map<String, String> models = new TreeMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        TypeElement model = processingEnv.getElementUtils().getTypeElement(MODEL);
+        if (model == null)
+            return false;
+
+        if (!round.processingOver()) {
+            for (TypeElement type : ElementFilter.typesIn(round.getRootElements()))
+                collect(type, model.asType());
+            return false;
+        }
+
+        if (!models.isEmpty())
+            write();
+        return false;
+    }
+
+
+    // Helpers
+    private void collect(TypeElement type, TypeMirror model) {
+        var types = processingEnv.getTypeUtils();
+        if (type.getKind() == ElementKind.CLASS && !type.getModifiers().contains(Modifier.ABSTRACT) &&
+            types.isAssignable(types.erasure(type.asType()), types.erasure(model))) {
+            StringBuilder line = new StringBuilder(binaryName(type));
+            int hash = 0;
+            for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+                if (!field.getModifiers().contains(Modifier.STATIC))
+                    hash += (field.getSimpleName() + ":" + descriptor(field.asType())).hashCode();
+            }
+            line.append(" #").append(Integer.toHexString(hash));
+
+            for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+                AnnotationMirror bind = bind(field);
+                if (field.getModifiers().contains(Modifier.STATIC) || bind == null)
+                    continue;
+                line.append(' ').append(field.getSimpleName()).append(':').append(descriptor(field.asType()));
+                if (isOutput(bind))
+                    line.append(":out");
+            }
+            models.put(binaryName(type), line.toString());
+        }
+
+        for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements()))
+            collect(nested, model);
+    }
+
+    private static AnnotationMirror bind(Element field) {
+        for (AnnotationMirror a : field.getAnnotationMirrors()) {
+            if (((TypeElement) a.getAnnotationType().asElement()).getQualifiedName().contentEquals(BIND))
+                return a;
+        }
+        return null;
+    }
+
+    // only explicit values are present, the default is false
+    private static boolean isOutput(AnnotationMirror bind) {
+        for (var e : bind.getElementValues().entrySet()) {
+            if (e.getKey().getSimpleName().contentEquals("output"))
+                return Boolean.TRUE.equals(e.getValue().getValue());
+        }
+        return false;
+    }
+
+    private String descriptor(TypeMirror t) {
+        return switch (t.getKind()) {
+            case BOOLEAN -> "Z";
+            case BYTE -> "B";
+            case SHORT -> "S";
+            case CHAR -> "C";
+            case INT -> "I";
+            case LONG -> "J";
+            case FLOAT -> "F";
+            case DOUBLE -> "D";
+            case ARRAY -> "[" + descriptor(((ArrayType) t).getComponentType());
+            case DECLARED -> "L" + binaryName((TypeElement) processingEnv.getTypeUtils().asElement(t))
+                .replace('.', '/') + ";";
+            default -> descriptor(processingEnv.getTypeUtils().erasure(t)); // type variables
+        };
+    }
+
+    private String binaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    private void write() {
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", RESOURCE);
+            try (Writer w = file.openWriter()) {
+                w.write("# generated by " + getClass().getName() + "\n");
+                for (String line : models.values())
+                    w.write(line + "\n");
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Error writing " + RESOURCE + ": " + e);
+        }
+    }
+}
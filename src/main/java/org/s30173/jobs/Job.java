@@ -0,0 +1,65 @@
+package org.s30173.jobs;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A background job of a {@link JobService}. The task reports its progress through {@link #stage(String)},
+ * which is also where a cancelled job stops.
+ */
+public class Job<T> {
+    private final String name;
+    private final Object lane;
+    private final JobService service;
+    private volatile String stage = "Queued";
+    FutureTask<T> future;
+
+    Job(String name, Object lane, JobService service) {
+        this.name = name;
+        this.lane = lane;
+        this.service = service;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public Object lane() {
+        return lane;
+    }
+
+    public String stage() {
+        return stage;
+    }
+
+    // called by the task between its steps
+    public void stage(String stage) {
+        checkCancelled();
+        this.stage = stage;
+        service.progress(this);
+    }
+
+    public void checkCancelled() {
+        if (future.isCancelled() || Thread.currentThread().isInterrupted())
+            throw new CancellationException(name + " was cancelled");
+    }
+
+    // interrupts the job's thread, which also stops running scripts at their next loop iteration
+    public boolean cancel() {
+        return future.cancel(true);
+    }
+
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    public T await() throws InterruptedException, ExecutionException {
+        return future.get();
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + stage;
+    }
+}
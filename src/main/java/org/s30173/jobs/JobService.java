@@ -0,0 +1,98 @@
+package org.s30173.jobs;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Runs jobs on virtual threads. Jobs submitted with the same lane (e.g. the same {@code Controller})
+ * run one after another in submission order, jobs of different lanes run concurrently.
+ * Progress and completion callbacks go through the callback executor, e.g. {@code SwingUtilities::invokeLater}.
+ */
+public class JobService implements AutoCloseable {
+    public interface Task<T> {
+        T run(Job<T> job) throws Exception;
+    }
+
+    private final ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor();
+    private final Executor callbacks;
+    private final Map<Object, CompletableFuture<Void>> lanes = new WeakHashMap<>(); // the last job of each, guarded by itself
+    private final Set<Job<?>> active = ConcurrentHashMap.newKeySet();
+    private volatile Consumer<Job<?>> progressListener = _ -> {};
+
+    public JobService(Executor callbacks) {
+        this.callbacks = callbacks;
+    }
+
+    public JobService onProgress(Consumer<Job<?>> listener) {
+        this.progressListener = listener;
+        return this;
+    }
+
+    /**
+     * @param onDone receives the result, or the error ({@link CancellationException} if cancelled)
+     */
+    public <T> Job<T> submit(Object lane, String name, Task<T> task, BiConsumer<T, Throwable> onDone) {
+        Job<T> job = new Job<>(name, lane, this);
+
+        job.future = new FutureTask<>(() -> {
+            job.stage("Running");
+            return task.run(job);
+        }) {
+            @Override
+            protected void done() {
+                active.remove(job);
+                T result = null;
+                Throwable error = null;
+                try {
+                    result = get();
+                } catch (CancellationException e) {
+                    error = e;
+                } catch (ExecutionException e) {
+                    error = e.getCause();
+                } catch (InterruptedException e) {
+                    error = new CancellationException(name + " was interrupted");
+                }
+
+                T r = result;
+                Throwable err = error;
+                callbacks.execute(() -> {
+                    progressListener.accept(job);
+                    onDone.accept(r, err);
+                });
+            }
+        };
+
+        // the job starts when the one submitted before it in its lane is done; a cancelled job is done
+        // at once and its run is a no-op, so it doesn't hold up the lane
+        active.add(job);
+        synchronized (lanes) {
+            CompletableFuture<Void> last = lanes.getOrDefault(lane, CompletableFuture.completedFuture(null));
+            lanes.put(lane, last.thenRunAsync(job.future, pool));
+        }
+        return job;
+    }
+
+    public List<Job<?>> active() {
+        return List.copyOf(active);
+    }
+
+    public List<Job<?>> active(Object lane) {
+        return active.stream().filter(job -> job.lane() == lane).toList();
+    }
+
+    public void cancel(Object lane) {
+        active(lane).forEach(Job::cancel);
+    }
+
+    @Override
+    public void close() {
+        active.forEach(Job::cancel);
+        pool.shutdown();
+    }
+
+    void progress(Job<?> job) {
+        callbacks.execute(() -> progressListener.accept(job));
+    }
+}
@@ -0,0 +1,147 @@
+package org.s30173.metrics;
+
+import org.s30173.helpers.DatasetCache;
+import org.s30173.helpers.ScriptCache;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process metrics of the pipeline stages: a latency histogram, a counter, a failure counter and a
+ * byte total per {@link Stage}; a stage that threw is timed up to where it failed. Off unless {@code -Dutp.metrics=true} or {@link #enable()}; while off nothing is
+ * timed or recorded. {@link #report()} formats everything for the CLI and the GUI.
+ */
+public final class Metrics {
+    private static volatile boolean enabled = Boolean.getBoolean("utp.metrics");
+
+    private static final Map<Stage, Timer> timers = new EnumMap<>(Stage.class);
+
+    static {
+        for (Stage stage : Stage.values())
+            timers.put(stage, new Timer());
+    }
+
+    private Metrics() {}
+
+    public static boolean enabled() {
+        return enabled;
+    }
+
+    public static void enable() {
+        enabled = true;
+    }
+
+    public static void reset() {
+        timers.values().forEach(Timer::reset);
+    }
+
+    static void record(Stage stage, long nanos, long bytes, boolean failed) {
+        timers.get(stage).record(nanos, bytes, failed);
+    }
+
+    public static long count(Stage stage) {
+        return timers.get(stage).count.sum();
+    }
+
+    public static long failures(Stage stage) {
+        return timers.get(stage).failures.sum();
+    }
+
+    public static long bytes(Stage stage) {
+        return timers.get(stage).bytes.sum();
+    }
+
+    // latency at the given percentile (0-100) in nanoseconds, within ~6% (the histogram's resolution)
+    public static long percentile(Stage stage, double p) {
+        return timers.get(stage).percentile(p);
+    }
+
+    public static String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-15s %8s %8s %10s %10s %10s %10s %10s%n",
+            "stage", "count", "failed", "p50 ms", "p90 ms", "p99 ms", "max ms", "MB"));
+        for (Stage stage : Stage.values()) {
+            Timer t = timers.get(stage);
+            long n = t.count.sum();
+            if (n == 0)
+                continue;
+            sb.append(String.format("%-15s %8d %8d %10.3f %10.3f %10.3f %10.3f %10.2f%n", stage.label(), n,
+                t.failures.sum(), t.percentile(50) / 1e6, t.percentile(90) / 1e6, t.percentile(99) / 1e6, t.max.get() / 1e6,
+                t.bytes.sum() / 1048576.0));
+        }
+        if (!enabled)
+            sb.append("(metrics are off, enable with -Dutp.metrics=true)\n");
+        sb.append(ScriptCache.stats()).append('\n');
+        sb.append(DatasetCache.stats()).append('\n');
+        return sb.toString();
+    }
+
+
+    // Helpers
+    // Log-linear histogram: 16 linear sub-buckets per power of two, so any value is within 1/16
+    // of its bucket. Covers the whole long range in 64 * 16 counters.
+    private static final class Timer {
+        private static final int SUB_BITS = 4;
+        private static final int SUB = 1 << SUB_BITS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void record(long nanos, long bytes, boolean failed) {
+            nanos = Math.max(nanos, 0);
+            buckets.incrementAndGet(index(nanos));
+            count.increment();
+            if (failed)
+                failures.increment();
+            this.bytes.add(bytes);
+            max.accumulate(nanos);
+        }
+
+        long percentile(double p) {
+            long total = count.sum();
+            if (total == 0)
+                return 0;
+
+            long rank = Math.max(1, (long) Math.ceil(total * p / 100));
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank)
+                    return Math.min(upperBound(i), max.get());
+            }
+            return max.get();
+        }
+
+        void reset() {
+            for (int i = 0; i < buckets.length(); i++)
+                buckets.set(i, 0);
+            count.reset();
+            failures.reset();
+            bytes.reset();
+            max.reset();
+        }
+
+        private static int index(long v) {
+            if (v < SUB)
+                return (int) v;
+            int exp = 63 - Long.numberOfLeadingZeros(v);  // >= SUB_BITS
+            int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB - 1);
+            return (exp - SUB_BITS + 1) * SUB + sub;
+        }
+
+        private static long upperBound(int index) {
+            if (index < SUB)
+                return index;
+            int exp = index / SUB + SUB_BITS - 1;
+            long sub = index % SUB;
+            long lower = (1L << exp) | (sub << (exp - SUB_BITS));
+            return lower + (1L << (exp - SUB_BITS)) - 1;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.s30173.metrics;
+
+// the pipeline stages that are traced, in pipeline order
+public enum Stage {
+    LOAD("Load data"),
+    BIND("Bind"),
+    RUN("Model run"),
+    MONTE_CARLO("Monte Carlo"),
+    SCRIPT_COMPILE("Script compile"),
+    SCRIPT_EVAL("Script eval"),
+    TABLE("Table update"),
+    EXPORT("Export");
+
+    private final String label;
+
+    Stage(String label) {
+        this.label = label;
+    }
+
+    public String label() {
+        return label;
+    }
+}
@@ -0,0 +1,39 @@
+package org.s30173.metrics;
+
+import jdk.jfr.*;
+
+/**
+ * Flight Recorder event for one pipeline stage. Enabled by default with a 1 ms threshold, e.g.
+ * {@code java -XX:StartFlightRecording:filename=run.jfr ...}; costs nothing while no recording runs.
+ */
+@Name("org.s30173.Stage")
+@Label("Pipeline Stage")
+@Category("Modelling Framework")
+@Description("A stage of loading data, running a model or a script, or exporting results")
+@Threshold("1 ms")
+@StackTrace(false)
+class StageEvent extends Event {
+    @Label("Stage")
+    String stage;
+
+    @Label("Model Class")
+    String modelClass;
+
+    @Label("Data File")
+    String dataFile;
+
+    @Label("Series")
+    int seriesCount;
+
+    @Label("Years")
+    @Description("LL, the length of every series")
+    int years;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+
+    @Label("Failed")
+    @Description("The stage threw, it ended early")
+    boolean failed;
+}
@@ -0,0 +1,98 @@
+package org.s30173.metrics;
+
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Times one run of a stage for JFR and {@link Metrics}, also when it throws:
+ * <pre>
+ *   StageTrace trace = StageTrace.begin(Stage.RUN).model(name).years(ll);
+ *   try {
+ *       ...
+ *   } catch (Throwable e) {
+ *       trace.failed();
+ *       throw e;
+ *   } finally {
+ *       trace.end();
+ *   }
+ * </pre>
+ * Stages are coarse (a whole parse, run or export), so this costs a JFR event check and, when metrics
+ * are on, two {@code nanoTime} calls per stage. While metrics are off and Flight Recorder was never
+ * started, {@link #begin} returns a shared no-op trace, so tight re-run loops allocate nothing here.
+ */
+public final class StageTrace {
+    private static final StageTrace OFF = new StageTrace(null, false, null);
+
+    private final Stage stage;
+    private final StageEvent event; // null for OFF
+    private final boolean timed;
+    private final long start;
+    private long bytes;
+    private boolean failed;
+
+    private StageTrace(Stage stage, boolean timed, StageEvent event) {
+        this.stage = stage;
+        this.timed = timed;
+        this.event = event;
+        this.start = timed ? System.nanoTime() : 0;
+        if (event != null)
+            event.begin();
+    }
+
+    public static StageTrace begin(Stage stage) {
+        boolean timed = Metrics.enabled();
+        if (!timed && !FlightRecorder.isInitialized())
+            return OFF; // no recording can be running
+        return new StageTrace(stage, timed, new StageEvent());
+    }
+
+    public StageTrace model(String modelClass) {
+        if (event != null)
+            event.modelClass = modelClass;
+        return this;
+    }
+
+    public StageTrace data(String dataFile) {
+        if (event != null)
+            event.dataFile = dataFile;
+        return this;
+    }
+
+    public StageTrace series(int count) {
+        if (event != null)
+            event.seriesCount = count;
+        return this;
+    }
+
+    public StageTrace years(int years) {
+        if (event != null)
+            event.years = years;
+        return this;
+    }
+
+    public StageTrace bytes(long bytes) {
+        if (event != null)
+            this.bytes = bytes;
+        return this;
+    }
+
+    // the stage threw: end() records it as failed
+    public StageTrace failed() {
+        if (event != null)
+            failed = true;
+        return this;
+    }
+
+    public void end() {
+        if (event == null)
+            return;
+        event.end();
+        if (event.shouldCommit()) {
+            event.stage = stage.label();
+            event.bytes = bytes;
+            event.failed = failed;
+            event.commit();
+        }
+        if (timed)
+            Metrics.record(stage, System.nanoTime() - start, bytes, failed);
+    }
+}
@@ -17,7 +17,7 @@ public class Model1 implements Model {
     @Bind private double[] INW; // investments
     @Bind private double[] EKS; // export
     @Bind private double[] IMP; // import
-    @Bind private double[] PKB; // GDP
+    @Bind(output = true) private double[] PKB; // GDP
 
     private double temp; // this field is not associated with the data model or with the results
 
@@ -25,9 +25,19 @@ public class Model1 implements Model {
 
     @Override
     public void run() {
-        PKB = new double[LL];
-        PKB[0] = KI[0] + KS[0] + INW[0] + EKS[0] - IMP[0];
-        for (int t = 1; t < LL; t++) {
+        run(0);
+    }
+
+    @Override
+    public void run(int fromYear) {
+        if (PKB == null || PKB.length != LL) { // pre-sized when bound, see @Bind(output = true)
+            PKB = new double[LL];
+            fromYear = 0;
+        }
+
+        if (fromYear == 0)
+            PKB[0] = KI[0] + KS[0] + INW[0] + EKS[0] - IMP[0];
+        for (int t = Math.max(fromYear, 1); t < LL; t++) {
             KI[t] = twKI[t] * KI[t - 1];
             KS[t] = twKS[t] * KS[t - 1];
             INW[t] = twINW[t] * INW[t - 1];
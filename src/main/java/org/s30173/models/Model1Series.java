@@ -0,0 +1,49 @@
+package org.s30173.models;
+
+import org.s30173.helpers.Bind;
+import org.s30173.helpers.Model;
+import org.s30173.helpers.Series;
+
+// Model1 over Series fields, which live wherever the controller's SeriesStorage puts them
+public class Model1Series implements Model {
+    @Bind private int LL; // number of years
+
+    @Bind private Series twKI; // the growth rate of private consumption
+    @Bind private Series twKS; // the growth rate of public consumption
+    @Bind private Series twINW; // investment growth
+    @Bind private Series twEKS; // export growth
+    @Bind private Series twIMP; // import growth
+
+    @Bind private Series KI; // private consumption
+    @Bind private Series KS; // public consumption
+    @Bind private Series INW; // investments
+    @Bind private Series EKS; // export
+    @Bind private Series IMP; // import
+    @Bind(output = true) private Series PKB; // GDP
+
+    public Model1Series() {}
+
+    @Override
+    public void run() {
+        run(0);
+    }
+
+    @Override
+    public void run(int fromYear) {
+        if (PKB == null || PKB.length() != LL) { // pre-sized when bound, see @Bind(output = true)
+            PKB = Series.wrap(new double[LL]);
+            fromYear = 0;
+        }
+
+        if (fromYear == 0)
+            PKB.set(0, KI.get(0) + KS.get(0) + INW.get(0) + EKS.get(0) - IMP.get(0));
+        for (int t = Math.max(fromYear, 1); t < LL; t++) {
+            KI.set(t, twKI.get(t) * KI.get(t - 1));
+            KS.set(t, twKS.get(t) * KS.get(t - 1));
+            INW.set(t, twINW.get(t) * INW.get(t - 1));
+            EKS.set(t, twEKS.get(t) * EKS.get(t - 1));
+            IMP.set(t, twIMP.get(t) * IMP.get(t - 1));
+            PKB.set(t, KI.get(t) + KS.get(t) + INW.get(t) + EKS.get(t) - IMP.get(t));
+        }
+    }
+}
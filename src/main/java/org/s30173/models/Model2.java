@@ -0,0 +1,41 @@
+package org.s30173.models;
+
+import org.s30173.helpers.Bind;
+import org.s30173.helpers.Model;
+
+// Structure of GDP: the share of each component in PKB, in percent. Meant to run downstream of Model1
+// in a Pipeline, which wires the components and PKB in.
+public class Model2 implements Model {
+    @Bind private int LL; // number of years
+
+    @Bind private double[] KI; // private consumption
+    @Bind private double[] KS; // public consumption
+    @Bind private double[] INW; // investments
+    @Bind private double[] EKS; // export
+    @Bind private double[] IMP; // import
+    @Bind private double[] PKB; // GDP
+
+    @Bind(output = true) private double[] udzKI; // shares in GDP
+    @Bind(output = true) private double[] udzKS;
+    @Bind(output = true) private double[] udzINW;
+    @Bind(output = true) private double[] udzEKS;
+    @Bind(output = true) private double[] udzIMP;
+
+    public Model2() {}
+
+    @Override
+    public void run() {
+        run(0);
+    }
+
+    @Override
+    public void run(int fromYear) {
+        for (int t = fromYear; t < LL; t++) {
+            udzKI[t] = KI[t] / PKB[t] * 100;
+            udzKS[t] = KS[t] / PKB[t] * 100;
+            udzINW[t] = INW[t] / PKB[t] * 100;
+            udzEKS[t] = EKS[t] / PKB[t] * 100;
+            udzIMP[t] = IMP[t] / PKB[t] * 100;
+        }
+    }
+}
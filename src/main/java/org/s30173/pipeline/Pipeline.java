@@ -0,0 +1,323 @@
+package org.s30173.pipeline;
+
+import org.s30173.helpers.BindField;
+import org.s30173.helpers.BindFields;
+import org.s30173.helpers.DatasetCache;
+import org.s30173.helpers.Model;
+import org.s30173.helpers.SeriesFile.Snapshot;
+import org.s30173.helpers.SeriesStorage;
+import org.s30173.helpers.TsvWriter;
+import org.s30173.metrics.Stage;
+import org.s30173.metrics.StageTrace;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.s30173.helpers.Config.modelClassName;
+
+/**
+ * Several models wired together by {@link org.s30173.helpers.Bind} field names:
+ * <pre>
+ *   new Pipeline()
+ *       .stage("gdp", "Model1", "KI", "KS", "INW", "EKS", "IMP", "PKB")
+ *       .stage("shares", "Model2")
+ *       .readDataFrom("data1.txt")
+ *       .run();
+ * </pre>
+ * A stage lists the fields it outputs; every other stage with a field of that name gets the very same
+ * array (or {@code Series}) as input, no copy is made. Fields no stage outputs come from the data, as in
+ * {@code Controller}. Stages must not write to their wired inputs.
+ * <p>
+ * Stages whose inputs are ready run in parallel on virtual threads. After the first run only stages whose
+ * data series changed ({@link #readDataFrom} again, {@link #input}) and the stages downstream of them run.
+ */
+public class Pipeline implements AutoCloseable {
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+    private List<Node> order; // topological, null until the graph is built
+
+    private final Map<String, MemorySegment> data = new HashMap<>();
+    private String[] lata;
+    private String dataFile;
+    private SeriesStorage storage = SeriesStorage.HEAP;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final List<String> lastRun = Collections.synchronizedList(new ArrayList<>());
+
+    // one "stage model outputs..." per line, # starts a comment
+    public static Pipeline fromFile(String fileName) {
+        Pipeline pipeline = new Pipeline();
+        try {
+            for (String line : Files.readAllLines(Path.of(fileName))) {
+                int hash = line.indexOf('#');
+                String[] parts = (hash >= 0 ? line.substring(0, hash) : line).trim().split("\\s+");
+                if (parts[0].isEmpty())
+                    continue;
+                if (parts.length < 2)
+                    throw new IllegalArgumentException("Expected a stage name and a model: " + line);
+                pipeline.stage(parts[0], parts[1], Arrays.copyOfRange(parts, 2, parts.length));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading pipeline file: " + fileName, e);
+        }
+        return pipeline;
+    }
+
+    public Pipeline stage(String name, String modelClassName, String... outputs) {
+        if (nodes.containsKey(name))
+            throw new IllegalArgumentException("Duplicate stage: " + name);
+        nodes.put(name, new Node(name, modelClassName(modelClassName), outputs));
+        order = null;
+        return this;
+    }
+
+    // where Series fields read from the data are allocated, see Controller.storage
+    public Pipeline storage(SeriesStorage storage) {
+        this.storage = storage;
+        return this;
+    }
+
+    // marks the stages reading a series that differs from the last data read (all of them the first time)
+    public Pipeline readDataFrom(String fileName) {
+        dataFile = fileName;
+        try {
+            Snapshot snapshot = DatasetCache.load(Path.of(fileName));
+            boolean yearsChanged = snapshot.lata() != null && !Arrays.equals(snapshot.lata(), lata);
+            if (snapshot.lata() != null)
+                lata = snapshot.lata();
+
+            Set<String> changed = new HashSet<>(data.keySet());
+            changed.addAll(snapshot.series().keySet());
+            changed.removeIf(name -> same(data.get(name), snapshot.series().get(name)));
+
+            data.clear();
+            data.putAll(snapshot.series());
+            if (yearsChanged)
+                nodes.values().forEach(node -> node.dirty = true);
+            else
+                changed.forEach(this::markReaders);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading data file: " + fileName, e);
+        }
+        return this;
+    }
+
+    // replaces one data series, the stages reading it and everything downstream run again
+    public Pipeline input(String name, double[] values) {
+        data.put(name, MemorySegment.ofArray(values.clone()));
+        markReaders(name);
+        return this;
+    }
+
+    // runs the stages that need it, waiting for all of them; a stage that failed runs again next time
+    public Pipeline run() {
+        if (lata == null)
+            throw new IllegalStateException("No data read, LATA is unknown");
+        if (order == null)
+            build();
+
+        for (Node node : order) {
+            for (Node producer : node.inputs.values())
+                node.dirty |= producer.dirty;
+        }
+
+        lastRun.clear();
+        Map<Node, CompletableFuture<Void>> running = new HashMap<>();
+        for (Node node : order) {
+            CompletableFuture<?>[] upstream = node.inputs.values().stream().distinct()
+                .map(running::get).toArray(CompletableFuture[]::new);
+            running.put(node, !node.dirty ? CompletableFuture.completedFuture(null) :
+                CompletableFuture.allOf(upstream).thenRunAsync(() -> execute(node), executor));
+        }
+
+        try {
+            CompletableFuture.allOf(running.values().toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re)
+                throw re;
+            throw e;
+        }
+        return this;
+    }
+
+    // stages executed by the last run, in completion order
+    public List<String> lastRun() {
+        return List.copyOf(lastRun);
+    }
+
+    public Object get(String stage, String field) {
+        Node node = nodes.get(stage);
+        if (node == null)
+            throw new IllegalArgumentException("No such stage: " + stage);
+        BindField f = node.fields.get(field);
+        if (f == null)
+            throw new IllegalArgumentException("No @Bind field " + field + " in stage: " + stage);
+        return f.get(node.model);
+    }
+
+    public String getResultsAsTsv() {
+        StringBuilder res = new StringBuilder(4096);
+        try {
+            writeResultsAsTsv(res);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing results", e); // StringBuilder doesn't throw
+        }
+        return res.toString();
+    }
+
+    // LATA, then "stage.FIELD" rows; wired inputs are left out, they are their producer's rows
+    public Pipeline writeResultsAsTsv(Appendable out) throws IOException {
+        TsvWriter w = new TsvWriter(out);
+        w.row("LATA", lata);
+        for (Node node : nodes.values()) {
+            for (BindField field : node.fields) {
+                if (!field.name().equals("LL") && !node.inputs.containsKey(field.name()))
+                    w.row(node.name + "." + field.name(), field.get(node.model));
+            }
+        }
+        w.flush();
+        return this;
+    }
+
+    @Override
+    public void close() {
+        executor.close();
+        nodes.values().forEach(node -> node.scope.close());
+    }
+
+
+    // Helpers
+    private static final class Node {
+        final String name;
+        final Model model;
+        final BindFields fields;
+        final Set<String> outputs;
+        final Map<String, Node> inputs = new LinkedHashMap<>(); // wired field -> producer
+        SeriesStorage.Scope scope = SeriesStorage.HEAP.open();
+        boolean dirty = true;
+
+        Node(String name, String modelClassName, String[] outputs) {
+            this.name = name;
+            try {
+                this.model = (Model) Class.forName(modelClassName).getDeclaredConstructor().newInstance();
+                this.fields = BindFields.of(model.getClass());
+            } catch (Exception e) {
+                throw new RuntimeException("Error creating model from class: " + modelClassName, e);
+            }
+            this.outputs = new LinkedHashSet<>(Arrays.asList(outputs));
+            for (String output : this.outputs) {
+                if (fields.get(output) == null || output.equals("LL"))
+                    throw new IllegalArgumentException("Stage " + name + " can't output " + output +
+                        ", it isn't a @Bind series of " + modelClassName);
+            }
+        }
+    }
+
+    // wires inputs to outputs by name and sorts the stages so producers come first
+    private void build() {
+        Map<String, Node> producers = new HashMap<>();
+        for (Node node : nodes.values()) {
+            node.inputs.clear();
+            for (String output : node.outputs) {
+                Node other = producers.putIfAbsent(output, node);
+                if (other != null)
+                    throw new IllegalArgumentException(output + " is output by two stages: " + other.name + ", " + node.name);
+            }
+        }
+
+        for (Node node : nodes.values()) {
+            for (BindField field : node.fields) {
+                Node producer = producers.get(field.name());
+                if (producer == null || producer == node)
+                    continue;
+                Class<?> type = producer.fields.get(field.name()).type();
+                if (type != field.type())
+                    throw new IllegalArgumentException("Can't wire " + producer.name + "." + field.name() + " (" +
+                        type.getSimpleName() + ") to " + node.name + " (" + field.type().getSimpleName() + ")");
+                node.inputs.put(field.name(), producer);
+            }
+        }
+
+        // Kahn's algorithm, in definition order among ready stages
+        Map<Node, Integer> waiting = new HashMap<>();
+        for (Node node : nodes.values())
+            waiting.put(node, (int) node.inputs.values().stream().distinct().count());
+
+        List<Node> sorted = new ArrayList<>();
+        Deque<Node> ready = new ArrayDeque<>();
+        nodes.values().stream().filter(node -> waiting.get(node) == 0).forEach(ready::add);
+        while (!ready.isEmpty()) {
+            Node node = ready.poll();
+            sorted.add(node);
+            for (Node next : nodes.values()) {
+                if (next.inputs.containsValue(node) && waiting.merge(next, -1, Integer::sum) == 0)
+                    ready.add(next);
+            }
+        }
+        if (sorted.size() < nodes.size()) {
+            List<String> cycle = nodes.values().stream().filter(node -> !sorted.contains(node))
+                .map(node -> node.name).toList();
+            throw new IllegalArgumentException("Stages depend on each other in a cycle: " + cycle);
+        }
+
+        order = sorted;
+        nodes.values().forEach(node -> node.dirty = true);
+    }
+
+    // binds fresh copies of the data and the producers' outputs as they are, then runs the model
+    private void execute(Node node) {
+        SeriesStorage.Scope previous = node.scope;
+        node.scope = storage.open();
+
+        int years = lata.length;
+        for (BindField field : node.fields) {
+            Node producer = node.inputs.get(field.name());
+            if (field.name().equals("LL"))
+                field.setInt(node.model, years);
+            else if (producer != null)
+                field.set(node.model, producer.fields.get(field.name()).get(producer.model));
+            else if (field.isSeries())
+                field.setSeries(node.model, BindFields.prepareSeries(data.get(field.name()), years, node.scope));
+            else if (field.isDoubles())
+                field.setDoubles(node.model, BindFields.prepareArray(data.get(field.name()), years));
+        }
+
+        StageTrace trace = StageTrace.begin(Stage.RUN)
+            .model(node.model.getClass().getName())
+            .data(dataFile)
+            .series(node.fields.list().size())
+            .years(years);
+        try {
+            node.model.run();
+        } catch (Throwable e) {
+            trace.failed();
+            throw e;
+        } finally {
+            trace.end();
+        }
+
+        previous.close();
+        node.dirty = false;
+        lastRun.add(node.name);
+    }
+
+    // data-fed readers of the series; run() takes care of downstream stages
+    private void markReaders(String series) {
+        for (Node node : nodes.values()) {
+            if (node.fields.get(series) != null && !node.inputs.containsKey(series))
+                node.dirty = true;
+        }
+    }
+
+    private static boolean same(MemorySegment a, MemorySegment b) {
+        if (a == null || b == null)
+            return a == b;
+        return a.byteSize() == b.byteSize() && MemorySegment.mismatch(a, 0, a.byteSize(), b, 0, b.byteSize()) < 0;
+    }
+}
@@ -0,0 +1,435 @@
+package org.s30173.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.s30173.Controller;
+import org.s30173.helpers.Model;
+import org.s30173.helpers.ModelIndex;
+
+import javax.script.ScriptException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.s30173.helpers.Config.DATA_DIR;
+import static org.s30173.helpers.Config.MODELS_DIR;
+import static org.s30173.helpers.Config.MODELS_PACKAGE;
+import static org.s30173.helpers.Config.modelClassName;
+
+/**
+ * A local HTTP service over {@link Controller}s, for tools that don't use the Swing GUI. A session is one
+ * controller: requests of a session run one at a time, different sessions run concurrently, every request
+ * on its own virtual thread. Sessions unused for {@link #IDLE_TIMEOUT_MS} are closed.
+ * <pre>
+ *   POST   /sessions?model=Model1[&amp;data=data1.txt]   201, the session id
+ *   POST   /sessions/{id}/data?file=data2.txt        reads the data and runs the model
+ *   POST   /sessions/{id}/run                        runs the model again
+ *   POST   /sessions/{id}/script                     runs the Groovy script in the body
+ *   GET    /sessions/{id}/results                    the results as TSV
+ *   GET    /sessions/{id}/export[?format=binary]     the same streamed, or streamed as a SeriesFile
+ *   DELETE /sessions/{id}
+ *   GET    /models, /data                            the names that can be picked
+ * </pre>
+ * Data files are names in {@code Config.DATA_DIR}, as in the GUI. Scripts run arbitrary code, so the
+ * server only listens on the loopback address, only answers requests for {@code localhost:<port>} or
+ * {@code 127.0.0.1:<port>} (a page whose host name was rebound to 127.0.0.1 sends its own), and creating a
+ * session needs {@code Authorization: Bearer <token>} with the {@link #token()} of this launch. A script
+ * is interrupted after {@link #SCRIPT_TIMEOUT_MS}. Errors are plain text: 400 for bad requests and failed
+ * or timed out scripts, 401 without the token, 403 for another host, 404 for unknown (or evicted)
+ * sessions, 409 before any data was read, 503 beyond {@link #MAX_SESSIONS}.
+ */
+public class ModelServer implements AutoCloseable {
+    public static long IDLE_TIMEOUT_MS = 10 * 60_000;
+    public static int MAX_SESSIONS = 1000;
+    public static long SCRIPT_TIMEOUT_MS = 60_000;
+
+    private final HttpServer server;
+    private final ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor();
+    // a platform thread: a runaway script keeps its carrier busy, the deadline must still fire
+    private final ScheduledExecutorService evictor =
+        Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("session-evictor").factory());
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger reserved = new AtomicInteger(); // sessions open or being created
+    private final String token = newToken();
+
+    // port 0 picks a free one, see port()
+    public ModelServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(requests);
+        server.createContext("/sessions", exchange -> handle(exchange, "sessions", this::sessions));
+        server.createContext("/models", exchange -> handle(exchange, "models", this::models));
+        server.createContext("/data", exchange -> handle(exchange, "data", this::data));
+    }
+
+    public ModelServer start() {
+        server.start();
+        long period = Math.max(IDLE_TIMEOUT_MS / 4, 10);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    // what clients send to create a session
+    public String token() {
+        return token;
+    }
+
+    public int sessionCount() {
+        return sessions.size();
+    }
+
+    // waits for the requests being handled, then closes every session
+    @Override
+    public void close() {
+        server.stop(0);
+        evictor.shutdownNow();
+        requests.close();
+        for (Session session : sessions.values()) {
+            session.lock.lock();
+            try {
+                close(session);
+            } finally {
+                session.lock.unlock();
+            }
+        }
+    }
+
+
+    // Helpers
+    private interface Handler {
+        void handle(HttpExchange exchange, List<String> path) throws Exception;
+    }
+
+    // a Controller and who may use it: the lock is held while a request runs
+    private static final class Session {
+        final String id = UUID.randomUUID().toString();
+        final Controller controller;
+        final ReentrantLock lock = new ReentrantLock();
+        volatile long lastUsed = System.nanoTime();
+        boolean closed; // under lock
+        boolean hasData; // under lock
+
+        Session(String modelClassName) {
+            this.controller = new Controller(modelClassName);
+        }
+    }
+
+    // signals an error response, thrown from anywhere in a handler
+    private static final class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    // contexts match by prefix, so /sessionsXYZ reaches the sessions context too: the first segment must be root
+    private void handle(HttpExchange exchange, String root, Handler handler) {
+        try (exchange) {
+            try {
+                List<String> path = Arrays.stream(exchange.getRequestURI().getPath().split("/"))
+                    .filter(part -> !part.isEmpty()).toList();
+                checkHost(exchange);
+                if (path.isEmpty() || !path.get(0).equals(root))
+                    throw new HttpError(404, "No such resource: " + exchange.getRequestURI().getPath());
+                handler.handle(exchange, path);
+            } catch (HttpError e) {
+                error(exchange, e.status, e.getMessage());
+            } catch (IllegalArgumentException | ScriptException e) {
+                error(exchange, 400, e.getMessage());
+            } catch (Exception e) {
+                error(exchange, 500, e.getMessage() != null ? e.getMessage() : e.toString());
+            }
+        }
+    }
+
+    private void sessions(HttpExchange exchange, List<String> path) throws Exception {
+        if (path.size() == 1) {
+            expect(exchange, "POST");
+            Map<String, String> params = query(exchange);
+            String model = params.get("model");
+            if (model == null)
+                throw new IllegalArgumentException("Expected ?model=<model>[&data=<data file>]");
+            checkToken(exchange);
+            if (reserved.incrementAndGet() > MAX_SESSIONS) {
+                reserved.decrementAndGet();
+                throw new HttpError(503, "Too many sessions: " + MAX_SESSIONS);
+            }
+
+            Session session = null;
+            try {
+                session = new Session(checkModel(model));
+                if (params.get("data") != null) {
+                    session.controller.readDataFrom(checkData(params.get("data"))).runModel();
+                    session.hasData = true;
+                }
+            } catch (RuntimeException | Error e) {
+                reserved.decrementAndGet();
+                if (session != null)
+                    session.controller.close();
+                throw e;
+            }
+            sessions.put(session.id, session);
+            send(exchange, 201, "text/plain", session.id + "\n");
+            return;
+        }
+
+        Session session = sessions.get(path.get(1));
+        if (session == null)
+            throw new HttpError(404, "No such session: " + path.get(1));
+        String action = path.size() == 3 ? path.get(2) : path.size() == 2 ? "" : null;
+
+        session.lock.lockInterruptibly();
+        try {
+            if (session.closed)
+                throw new HttpError(404, "No such session: " + session.id);
+            session.lastUsed = System.nanoTime();
+            Controller c = session.controller;
+
+            switch (action == null ? "?" : action) {
+                case "" -> {
+                    expect(exchange, "DELETE");
+                    close(session);
+                    send(exchange, 204, null, "");
+                }
+                case "data" -> {
+                    expect(exchange, "POST");
+                    String file = query(exchange).get("file");
+                    if (file == null)
+                        throw new IllegalArgumentException("Expected ?file=<data file>");
+                    c.readDataFrom(checkData(file)).runModel();
+                    session.hasData = true;
+                    send(exchange, 204, null, "");
+                }
+                case "run" -> {
+                    expect(exchange, "POST");
+                    requireData(session);
+                    c.runModel();
+                    send(exchange, 204, null, "");
+                }
+                case "script" -> {
+                    expect(exchange, "POST");
+                    requireData(session);
+                    runScript(c, new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+                    send(exchange, 204, null, "");
+                }
+                case "results" -> {
+                    expect(exchange, "GET");
+                    requireData(session);
+                    send(exchange, 200, "text/tab-separated-values", c.getResultsAsTsv());
+                }
+                case "export" -> {
+                    expect(exchange, "GET");
+                    requireData(session);
+                    boolean binary = "binary".equals(query(exchange).get("format"));
+                    exchange.getResponseHeaders().set("Content-Type",
+                        binary ? "application/octet-stream" : "text/tab-separated-values; charset=utf-8");
+                    exchange.sendResponseHeaders(200, 0); // chunked
+                    try (WritableByteChannel ch = Channels.newChannel(exchange.getResponseBody())) {
+                        if (binary)
+                            c.writeResultsAsBinary(ch);
+                        else
+                            c.writeResultsAsTsv(ch);
+                    }
+                }
+                default -> throw new HttpError(404, "No such resource: " + exchange.getRequestURI().getPath());
+            }
+        } finally {
+            session.lastUsed = System.nanoTime();
+            session.lock.unlock();
+        }
+    }
+
+    // model names as the GUI lists them: from the build-time index, the source directory without it
+    private void models(HttpExchange exchange, List<String> path) throws IOException {
+        expect(exchange, "GET");
+        StringBuilder sb = new StringBuilder();
+        for (String name : ModelIndex.modelClassNames()) {
+            if (name.startsWith(MODELS_PACKAGE) && !name.substring(MODELS_PACKAGE.length()).matches(".*[.$].*"))
+                sb.append(name.substring(MODELS_PACKAGE.length())).append('\n');
+        }
+        if (sb.isEmpty()) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(Path.of(MODELS_DIR), "*.java")) {
+                for (Path file : files) {
+                    String fileName = file.getFileName().toString();
+                    sb.append(fileName, 0, fileName.lastIndexOf('.')).append('\n');
+                }
+            }
+        }
+        send(exchange, 200, "text/plain", sb.toString());
+    }
+
+    private void data(HttpExchange exchange, List<String> path) throws IOException {
+        expect(exchange, "GET");
+        StringBuilder sb = new StringBuilder();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(Path.of(DATA_DIR))) {
+            for (Path file : files)
+                sb.append(file.getFileName()).append('\n');
+        }
+        send(exchange, 200, "text/plain", sb.toString());
+    }
+
+    // closes the sessions nobody used for IDLE_TIMEOUT_MS; a session handling a request isn't idle
+    private void evictIdle() {
+        long idle = TimeUnit.MILLISECONDS.toNanos(IDLE_TIMEOUT_MS);
+        for (Session session : sessions.values()) {
+            if (System.nanoTime() - session.lastUsed < idle || !session.lock.tryLock())
+                continue;
+            try {
+                if (System.nanoTime() - session.lastUsed >= idle)
+                    close(session);
+            } finally {
+                session.lock.unlock();
+            }
+        }
+    }
+
+    // scripts check for interrupts in their loops (see GroovyEngines), so the deadline interrupts this thread
+    private void runScript(Controller c, String script) throws ScriptException {
+        Thread thread = Thread.currentThread();
+        boolean[] state = new boolean[2]; // finished, timed out; guarded by itself
+        ScheduledFuture<?> deadline = evictor.schedule(() -> {
+            synchronized (state) {
+                if (!state[0]) {
+                    state[1] = true;
+                    thread.interrupt();
+                }
+            }
+        }, SCRIPT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        try {
+            c.runScript(script);
+        } catch (ScriptException | RuntimeException e) {
+            synchronized (state) {
+                if (state[1])
+                    throw new HttpError(400, "Script ran longer than " + SCRIPT_TIMEOUT_MS + " ms");
+            }
+            throw e;
+        } finally {
+            deadline.cancel(false);
+            synchronized (state) {
+                state[0] = true;
+                if (state[1])
+                    Thread.interrupted(); // the interrupt was for the script, not for the request
+            }
+        }
+    }
+
+    // under the session's lock
+    private void close(Session session) {
+        if (sessions.remove(session.id, session))
+            reserved.decrementAndGet();
+        if (!session.closed) {
+            session.closed = true;
+            session.controller.close();
+        }
+    }
+
+    // against DNS rebinding: the browser sends the host name of the page, which isn't one of ours
+    private void checkHost(HttpExchange exchange) {
+        String host = exchange.getRequestHeaders().getFirst("Host");
+        if (host == null || !(host.equals("localhost:" + port()) || host.equals("127.0.0.1:" + port())))
+            throw new HttpError(403, "Unexpected host: " + host);
+    }
+
+    private void checkToken(HttpExchange exchange) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        byte[] expected = ("Bearer " + token).getBytes(StandardCharsets.UTF_8);
+        if (authorization == null || !MessageDigest.isEqual(authorization.getBytes(StandardCharsets.UTF_8), expected))
+            throw new HttpError(401, "Expected Authorization: Bearer <token>, as printed when the server started");
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    private static void requireData(Session session) {
+        if (!session.hasData)
+            throw new HttpError(409, "No data read yet, POST /sessions/" + session.id + "/data?file=... first");
+    }
+
+    // a model class, checked before anything of it is initialized
+    private static String checkModel(String name) {
+        String className = modelClassName(name);
+        try {
+            if (!Model.class.isAssignableFrom(Class.forName(className, false, ModelServer.class.getClassLoader())))
+                throw new IllegalArgumentException("Not a model: " + name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("No such model: " + name);
+        }
+        return className;
+    }
+
+    // a file name in DATA_DIR, nothing outside it
+    private static String checkData(String name) {
+        if (name.isEmpty() || name.startsWith(".") || name.contains("/") || name.contains("\\"))
+            throw new IllegalArgumentException("Expected the name of a file in " + DATA_DIR + ": " + name);
+        String file = DATA_DIR + name;
+        if (!Files.isRegularFile(Path.of(file)))
+            throw new IllegalArgumentException("No such data file: " + name);
+        return file;
+    }
+
+    private static void expect(HttpExchange exchange, String method) {
+        if (!exchange.getRequestMethod().equals(method)) {
+            exchange.getResponseHeaders().set("Allow", method);
+            throw new HttpError(405, "Expected " + method + ": " + exchange.getRequestURI().getPath());
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null)
+            return params;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        if (contentType != null)
+            exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0)
+            exchange.getResponseBody().write(bytes);
+    }
+
+    // only while nothing was sent yet, e.g. a streamed export that failed halfway is just cut off
+    private static void error(HttpExchange exchange, int status, String message) {
+        if (exchange.getResponseCode() != -1)
+            return;
+        try {
+            send(exchange, status, "text/plain", message + "\n");
+        } catch (IOException e) {
+            // the client is gone
+        }
+    }
+}
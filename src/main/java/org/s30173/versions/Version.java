@@ -0,0 +1,225 @@
+package org.s30173.versions;
+
+import org.s30173.helpers.Series;
+import org.s30173.helpers.SeriesStorage;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The results of a controller as they were at one point: LATA, the {@code @Bind} fields and script vars.
+ * Numeric values (double[], int[] and {@link Series}) are kept on the heap in blocks of {@link #BLOCK}
+ * years; a block equal to the one of the previous version is that very block, so versions share what
+ * didn't change. Lists, maps, sets and arrays (e.g. what {@code PKB.collect { ... }} returns) are copied
+ * deeply, in and out, so a script changing them later doesn't change the version; other objects are
+ * kept as their text, as in {@code ValueSnapshot}. Immutable, see {@link VersionHistory}.
+ */
+public final class Version {
+    public static int BLOCK = 256;
+
+    private final int id;
+    private final String label;
+    private final String[] lata;
+    private final Map<String, Object> values; // Blocks or the value itself
+
+    Version(int id, String label, String[] lata, Map<String, Object> values, Version previous) {
+        this.id = id;
+        this.label = label;
+        this.lata = lata == null ? new String[0] : lata.clone();
+        this.values = new LinkedHashMap<>();
+        values.forEach((name, value) -> {
+            Object before = previous == null ? null : previous.values.get(name);
+            this.values.put(name, Blocks.kindOf(value) != null ?
+                Blocks.of(value, before instanceof Blocks b ? b : null) : copy(value));
+        });
+    }
+
+    public int id() {
+        return id;
+    }
+
+    public String label() {
+        return label;
+    }
+
+    public String[] lata() {
+        return lata.clone();
+    }
+
+    public Set<String> names() {
+        return Collections.unmodifiableSet(values.keySet());
+    }
+
+    public boolean contains(String name) {
+        return values.containsKey(name);
+    }
+
+    // a new copy of the value, of the type it had, Series on the heap
+    public Object get(String name) {
+        return restore(name, SeriesStorage.HEAP.open());
+    }
+
+    // as get, Series allocated in scope
+    public Object restore(String name, SeriesStorage.Scope scope) {
+        Object value = values.get(name);
+        return value instanceof Blocks b ? b.restore(scope) : copy(value);
+    }
+
+    @Override
+    public String toString() {
+        return "Version " + id + (label == null || label.isEmpty() ? "" : ": " + label);
+    }
+
+
+    // Helpers
+    Object stored(String name) {
+        return values.get(name);
+    }
+
+    // a copy sharing nothing mutable with value; numbers in collections stay as they are (Blocks is for series)
+    private static Object copy(Object value) {
+        if (value == null || value instanceof String || value instanceof Integer || value instanceof Long ||
+            value instanceof Double || value instanceof Float || value instanceof BigDecimal ||
+            value instanceof BigInteger || value instanceof Boolean || value instanceof Character || value instanceof Enum<?>)
+            return value;
+        if (value instanceof double[] v)
+            return v.clone();
+        if (value instanceof int[] v)
+            return v.clone();
+        if (value instanceof Object[] v) {
+            Object[] copy = v.clone();
+            for (int i = 0; i < copy.length; i++)
+                copy[i] = copy(copy[i]);
+            return copy;
+        }
+        if (value instanceof List<?> v) {
+            List<Object> copy = new ArrayList<>(v.size());
+            for (Object element : v)
+                copy.add(copy(element));
+            return copy;
+        }
+        if (value instanceof Set<?> v) {
+            Set<Object> copy = new LinkedHashSet<>();
+            for (Object element : v)
+                copy.add(copy(element));
+            return copy;
+        }
+        if (value instanceof Map<?, ?> v) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            v.forEach((key, element) -> copy.put(copy(key), copy(element)));
+            return copy;
+        }
+        if (value instanceof Series v)
+            return Series.wrap(v.toArray());
+        return value.toString(); // e.g. a GString, or an object of a script's class
+    }
+
+    // numeric values in blocks, the last one shorter
+    static final class Blocks {
+        enum Kind { DOUBLES, INTS, SERIES }
+
+        final Kind kind;
+        final int length;
+        final int size; // BLOCK when made
+        final double[][] blocks;
+
+        private Blocks(Kind kind, int length, int size, double[][] blocks) {
+            this.kind = kind;
+            this.length = length;
+            this.size = size;
+            this.blocks = blocks;
+        }
+
+        static Kind kindOf(Object value) {
+            if (value instanceof double[])
+                return Kind.DOUBLES;
+            if (value instanceof int[])
+                return Kind.INTS;
+            if (value instanceof Series)
+                return Kind.SERIES;
+            return null;
+        }
+
+        // blocks of previous equal to those of value are shared, only the others are copied
+        static Blocks of(Object value, Blocks previous) {
+            Kind kind = kindOf(value);
+            int length = length(value);
+            int size = BLOCK;
+            boolean sharable = previous != null && previous.length == length && previous.size == size;
+            double[][] blocks = new double[(length + size - 1) / size][];
+            double[] scratch = null;
+            for (int i = 0; i < blocks.length; i++) {
+                int from = i * size;
+                int n = Math.min(size, length - from);
+                if (scratch == null || scratch.length != n)
+                    scratch = new double[n];
+                read(value, from, scratch);
+                if (sharable && Arrays.equals(previous.blocks[i], scratch)) {
+                    blocks[i] = previous.blocks[i];
+                } else {
+                    blocks[i] = scratch;
+                    scratch = null;
+                }
+            }
+            return new Blocks(kind, length, size, blocks);
+        }
+
+        double get(int i) {
+            return blocks[i / size][i % size];
+        }
+
+        Object restore(SeriesStorage.Scope scope) {
+            switch (kind) {
+                case DOUBLES -> {
+                    double[] values = new double[length];
+                    for (int i = 0; i < blocks.length; i++)
+                        System.arraycopy(blocks[i], 0, values, i * size, blocks[i].length);
+                    return values;
+                }
+                case INTS -> {
+                    int[] values = new int[length];
+                    for (int i = 0; i < length; i++)
+                        values[i] = (int) get(i);
+                    return values;
+                }
+                default -> {
+                    Series values = scope.allocate(length);
+                    for (int i = 0; i < blocks.length; i++)
+                        MemorySegment.copy(blocks[i], 0, values.segment(), ValueLayout.JAVA_DOUBLE,
+                            (long) i * size * Double.BYTES, blocks[i].length);
+                    return values;
+                }
+            }
+        }
+
+        private static int length(Object value) {
+            if (value instanceof double[] v)
+                return v.length;
+            if (value instanceof int[] v)
+                return v.length;
+            return ((Series) value).length();
+        }
+
+        private static void read(Object value, int from, double[] into) {
+            if (value instanceof double[] v) {
+                System.arraycopy(v, from, into, 0, into.length);
+            } else if (value instanceof int[] v) {
+                for (int i = 0; i < into.length; i++)
+                    into[i] = v[from + i];
+            } else {
+                MemorySegment.copy(((Series) value).segment(), ValueLayout.JAVA_DOUBLE, (long) from * Double.BYTES,
+                    into, 0, into.length);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.s30173.versions;
+
+import org.s30173.versions.Version.Blocks;
+
+import java.util.*;
+
+/**
+ * Versions of a controller's results, oldest first, at most {@link #MAX_VERSIONS}. Each new version
+ * shares the blocks that didn't change with the head (the last one committed or rolled back to), so
+ * memory grows with what changed, and comparing two versions skips the blocks they share.
+ * <pre>
+ *   Version before = controller.commit("base");
+ *   controller.runScript("twKI[3] = 0.05").commit("twKI up");
+ *   VersionHistory.diff(before, controller.versions().head()); // twKI[3] and what it changed
+ *   controller.rollback(before.id());
+ * </pre>
+ */
+public final class VersionHistory {
+    public static int MAX_VERSIONS = 100;
+
+    /** A value that differs: one year of a series, or a whole non-numeric value (year -1, values NaN). */
+    public record Change(String name, int year, String lata, double before, double after) {}
+
+    private final Deque<Version> versions = new ArrayDeque<>();
+    private Version head;
+    private int nextId = 1;
+
+    // values by name, copied: numeric ones (double[], int[] and Series) in blocks, the others deeply, see Version
+    public Version commit(String label, String[] lata, Map<String, Object> values) {
+        head = new Version(nextId++, label, lata, values, head);
+        versions.addLast(head);
+        while (versions.size() > MAX_VERSIONS)
+            versions.removeFirst();
+        return head;
+    }
+
+    public Version get(int id) {
+        for (Version version : versions) {
+            if (version.id() == id)
+                return version;
+        }
+        throw new IllegalArgumentException("No such version: " + id);
+    }
+
+    // the version the next one is compared against, null before the first commit
+    public Version head() {
+        return head;
+    }
+
+    // makes a version the head, e.g. after its values were put back
+    public Version checkout(int id) {
+        head = get(id);
+        return head;
+    }
+
+    public List<Version> list() {
+        return List.copyOf(versions);
+    }
+
+    public int size() {
+        return versions.size();
+    }
+
+    /**
+     * Every value of {@code to} that isn't in {@code from}, by name in the order of {@code to} (names only
+     * {@code from} has last) and year. A missing year or name is NaN; blocks the versions share aren't read.
+     */
+    public static List<Change> diff(Version from, Version to) {
+        List<Change> changes = new ArrayList<>();
+        String[] lata = to.lata().length > 0 ? to.lata() : from.lata();
+        Set<String> names = new LinkedHashSet<>(to.names());
+        names.addAll(from.names());
+        for (String name : names) {
+            Object a = from.stored(name);
+            Object b = to.stored(name);
+            if (a instanceof Blocks || b instanceof Blocks)
+                diff(name, a instanceof Blocks x ? x : null, b instanceof Blocks y ? y : null, lata, changes);
+            else if (!Objects.equals(a, b) || from.contains(name) != to.contains(name))
+                changes.add(new Change(name, -1, null, Double.NaN, Double.NaN));
+        }
+        return changes;
+    }
+
+    // heap bytes of the blocks of all versions, each shared block once
+    public long retainedBytes() {
+        Set<double[]> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        long bytes = 0;
+        for (Version version : versions) {
+            for (String name : version.names()) {
+                if (version.stored(name) instanceof Blocks b) {
+                    for (double[] block : b.blocks) {
+                        if (seen.add(block))
+                            bytes += (long) block.length * Double.BYTES;
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+
+
+    // Helpers
+    private static void diff(String name, Blocks a, Blocks b, String[] lata, List<Change> changes) {
+        int length = Math.max(a == null ? 0 : a.length, b == null ? 0 : b.length);
+        boolean aligned = a != null && b != null && a.size == b.size;
+        for (int t = 0; t < length; t++) {
+            if (aligned && t % a.size == 0 && t / a.size < Math.min(a.blocks.length, b.blocks.length) &&
+                a.blocks[t / a.size] == b.blocks[t / a.size]) {
+                t += a.blocks[t / a.size].length - 1; // shared block
+                continue;
+            }
+            double before = a != null && t < a.length ? a.get(t) : Double.NaN;
+            double after = b != null && t < b.length ? b.get(t) : Double.NaN;
+            if (Double.doubleToLongBits(before) != Double.doubleToLongBits(after))
+                changes.add(new Change(name, t, t < lata.length ? lata[t] : null, before, after));
+        }
+    }
+}
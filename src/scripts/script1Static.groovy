@@ -0,0 +1,3 @@
+double[] ZDEKS = new double[LL]
+for (int i = 0; i < LL; i++)
+    ZDEKS[i] = EKS[i] / PKB[i]
\ No newline at end of file
@@ -0,0 +1,81 @@
+package org.s30173;
+
+import org.junit.jupiter.api.Test;
+import org.s30173.helpers.Config;
+
+import javax.script.ScriptException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Re-running a model with {@code reuseBuffers(true)} binds the same series again, refilled from the data,
+ * see {@code Controller.reuseBuffers}. What a re-run allocates is measured by the JMH benchmark
+ * {@code PipelineBenchmark.runModelReusingBuffers} with {@code -prof gc}.
+ */
+class BufferReuseTest {
+    private static final String MODEL = "org.s30173.models.Model1";
+
+    @Test
+    void reRunsBindTheSameBuffers() throws ScriptException {
+        Rows rows = new Rows();
+        try (Controller controller = new Controller(MODEL, rows).reuseBuffers(true)) {
+            controller.readDataFrom(Config.DATA_DIR + "data1.txt").runModel();
+            Map<String, Object> first = new HashMap<>(rows.values);
+
+            controller.runScript("twKI[2] = 5"); // changes an input in place, the re-run refills it
+            controller.runModel();
+
+            assertEquals(first.keySet(), rows.values.keySet());
+            for (String name : first.keySet())
+                assertSame(first.get(name), rows.values.get(name), name + " was bound to a new buffer");
+            assertArrayEquals(freshRun("twKI"), (double[]) rows.values.get("twKI"), "twKI wasn't refilled");
+            assertArrayEquals(freshRun("PKB"), (double[]) rows.values.get("PKB"), "PKB wasn't computed again");
+        }
+    }
+
+    @Test
+    void withoutReuseReRunsBindNewSeries() {
+        Rows rows = new Rows();
+        try (Controller controller = new Controller(MODEL, rows)) {
+            controller.readDataFrom(Config.DATA_DIR + "data1.txt").runModel();
+            Object pkb = rows.values.get("PKB");
+            controller.runModel();
+            assertNotSame(pkb, rows.values.get("PKB"));
+        }
+    }
+
+
+    // Helpers
+    private static double[] freshRun(String name) {
+        Rows rows = new Rows();
+        try (Controller controller = new Controller(MODEL, rows)) {
+            controller.readDataFrom(Config.DATA_DIR + "data1.txt").runModel();
+            return (double[]) rows.values.get(name);
+        }
+    }
+
+    // the value each row references, as the table would
+    private static class Rows implements ResultsListener {
+        final Map<String, Object> values = new HashMap<>();
+
+        @Override
+        public void columns(String[] lata) {
+            values.clear();
+        }
+
+        @Override
+        public void rowAdded(String name, Object value) {
+            values.put(name, value);
+        }
+
+        @Override
+        public void rowChanged(int row, String name, Object value) {
+            values.put(name, value);
+        }
+    }
+}
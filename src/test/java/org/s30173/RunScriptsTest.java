@@ -0,0 +1,79 @@
+package org.s30173;
+
+import org.junit.jupiter.api.Test;
+import org.s30173.helpers.Config;
+import org.s30173.helpers.ScriptAccess;
+
+import javax.script.ScriptException;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@code Controller.runScripts} gives the same results as running its scripts one by one, also when a
+ * script changes a series through another variable referencing it.
+ */
+class RunScriptsTest {
+    private static final String MODEL = "org.s30173.models.Model1";
+    private static final Set<String> BIND_NAMES = Set.of("LL", "twKI", "KI", "PKB");
+
+    private static final List<List<String>> BATCHES = List.of(
+        // X references twKI: X[3] = 2 changes an input of the model, R must see the re-run
+        List.of("X = twKI", "X[3] = 2", "R = PKB[4]"),
+        // the same through a method call on the reference
+        List.of("Y = twKS", "Y.putAt(2, 2d)", "S = PKB[3]"),
+        // independent: each fills an array of its own
+        List.of("ZDEKS = new double[LL]\nfor (i = 0; i < LL; i++) ZDEKS[i] = EKS[i] / PKB[i]",
+                "DPKB = new double[LL]\nfor (t = 0; t < LL; t++) DPKB[t] = PKB[t] / PKB[0] * 100",
+                "twKS = new double[LL]\nfor (t = 0; t < LL; t++) twKS[t] = 1.01",
+                "P = PKB.collect { it * 2 }"));
+
+    @Test
+    void batchGivesTheSameResultsAsOneByOne() throws ScriptException {
+        for (List<String> batch : BATCHES) {
+            try (Controller oneByOne = newController(); Controller batched = newController()) {
+                for (String script : batch)
+                    oneByOne.runScript(script);
+                batched.runScripts(batch);
+                assertEquals(oneByOne.getResultsAsTsv(), batched.getResultsAsTsv(), "results of " + batch);
+            }
+        }
+    }
+
+    @Test
+    void onlyScriptsChangingSharedObjectsRunAlone() {
+        ScriptAccess alias = access("X = twKI");
+        ScriptAccess change = access("X[3] = 2");
+        ScriptAccess read = access("R = PKB[4]");
+        ScriptAccess own = access("D = new double[LL]\nfor (t = 0; t < LL; t++) D[t] = PKB[t]");
+        ScriptAccess reassigned = access("E = new double[LL]\nE = KI\nE[0] = 1");
+
+        assertEquals(Set.of("X"), change.mutates());
+        assertTrue(own.mutates().isEmpty(), "D is the script's own array");
+        assertEquals(Set.of("E"), reassigned.mutates());
+
+        assertFalse(alias.conflictsWith(read, BIND_NAMES));
+        assertFalse(own.conflictsWith(read, BIND_NAMES));
+        assertTrue(alias.conflictsWith(change, BIND_NAMES));
+        assertTrue(change.conflictsWith(read, BIND_NAMES), "X may be any series");
+        assertTrue(read.conflictsWith(change, BIND_NAMES), "X may be PKB");
+    }
+
+
+    // Helpers
+    private static Controller newController() {
+        return new Controller(MODEL).readDataFrom(Config.DATA_DIR + "data1.txt").runModel();
+    }
+
+    // the scripts here are fixed, one that doesn't parse is a broken test
+    private static ScriptAccess access(String script) {
+        try {
+            return ScriptAccess.of(script);
+        } catch (ScriptException e) {
+            throw new AssertionError("Script doesn't parse: " + script, e);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.s30173.helpers;
+
+import org.junit.jupiter.api.Test;
+
+import javax.script.ScriptContext;
+import javax.script.ScriptException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Scripts evicted from the {@link ScriptCache} don't keep their generated classes loaded.
+ */
+class ScriptCacheTest {
+    private static final int EVICTED = 16;
+    private static final long GC_TIMEOUT_MS = 10_000;
+
+    @Test
+    void evictedScriptClassesBecomeUnreachable() throws ScriptException, InterruptedException {
+        ScriptCache.clear();
+        EnginePool engines = EnginePool.shared();
+        ScriptContext context = engines.newContext();
+
+        List<WeakReference<Class<?>>> classes = new ArrayList<>();
+        for (int i = 0; i < ScriptCache.SCRIPT_CACHE_SIZE + EVICTED; i++) {
+            Class<?> scriptClass = (Class<?>) ScriptCache.get(engines, "x" + i + " = " + i + "; this.getClass()")
+                .eval(context);
+            classes.add(new WeakReference<>(scriptClass));
+        }
+        context.getBindings(ScriptContext.ENGINE_SCOPE).clear();
+        assertEquals(ScriptCache.SCRIPT_CACHE_SIZE, ScriptCache.size());
+
+        long deadline = System.currentTimeMillis() + GC_TIMEOUT_MS;
+        while (classes.subList(0, EVICTED).stream().anyMatch(c -> c.get() != null) &&
+               System.currentTimeMillis() < deadline) {
+            System.gc();
+            Thread.sleep(50);
+        }
+
+        for (int i = 0; i < EVICTED; i++)
+            assertNull(classes.get(i).get(), "class of evicted script " + i + " is still loaded");
+        for (int i = EVICTED; i < classes.size(); i++)
+            assertNotNull(classes.get(i).get(), "class of cached script " + i + " was unloaded");
+        ScriptCache.clear();
+    }
+}
@@ -0,0 +1,58 @@
+package org.s30173.helpers;
+
+import org.junit.jupiter.api.Test;
+
+import javax.script.Bindings;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptException;
+import javax.script.SimpleScriptContext;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * A static script writes its variables back to the bindings however it ends, as a dynamic one
+ * assigns them there directly.
+ */
+class StaticScriptsTest {
+    private static final Map<String, Class<?>> TYPES = Map.of("LL", int.class, "twKI", double[].class);
+
+    @Test
+    void topLevelReturnWritesVariablesBack() throws ScriptException {
+        ScriptContext context = context();
+        StaticScripts.compile("""
+            twKI = new double[LL]
+            double[] D = new double[LL]
+            D = new double[LL]
+            for (int t = 0; t < LL; t++) { twKI[t] = 1.5; D[t] = t }
+            if (LL > 0) return
+            twKI[0] = 9""", TYPES).eval(context);
+
+        Bindings bindings = context.getBindings(ScriptContext.ENGINE_SCOPE);
+        assertArrayEquals(new double[] {1.5, 1.5, 1.5}, (double[]) bindings.get("twKI"));
+        assertArrayEquals(new double[] {0, 1, 2}, (double[]) bindings.get("D"));
+    }
+
+    @Test
+    void failingScriptWritesVariablesBack() throws ScriptException {
+        ScriptContext context = context();
+        CompiledScript compiled = StaticScripts.compile(
+            "twKI = new double[LL]; twKI[0] = 2; throw new IllegalStateException('x')", TYPES);
+        assertThrows(ScriptException.class, () -> compiled.eval(context));
+
+        Bindings bindings = context.getBindings(ScriptContext.ENGINE_SCOPE);
+        assertArrayEquals(new double[] {2, 0, 0}, (double[]) bindings.get("twKI"));
+    }
+
+
+    // Helpers
+    private static ScriptContext context() {
+        ScriptContext context = new SimpleScriptContext();
+        Bindings bindings = context.getBindings(ScriptContext.ENGINE_SCOPE);
+        bindings.put("LL", 3);
+        bindings.put("twKI", new double[3]);
+        return context;
+    }
+}
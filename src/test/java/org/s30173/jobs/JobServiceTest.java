@@ -0,0 +1,78 @@
+package org.s30173.jobs;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Jobs of one lane run one at a time in submission order, also when an earlier job takes longer or
+ * a queued one is cancelled.
+ */
+class JobServiceTest {
+    private static final int JOBS = 500;
+
+    @Test
+    void jobsOfALaneRunInSubmissionOrder() throws Exception {
+        Object lane = new Object();
+        List<Integer> started = Collections.synchronizedList(new ArrayList<>());
+        int[] running = {0};
+        int[] overlapping = {0};
+
+        try (JobService jobs = new JobService(Runnable::run)) {
+            Job<Integer> last = null;
+            for (int i = 0; i < JOBS; i++) {
+                int n = i;
+                last = jobs.submit(lane, "Job " + n, _ -> {
+                    synchronized (running) {
+                        if (running[0]++ > 0)
+                            overlapping[0]++;
+                    }
+                    started.add(n);
+                    if (n % 50 == 0)
+                        Thread.sleep(5); // later jobs are submitted while this one runs
+                    synchronized (running) {
+                        running[0]--;
+                    }
+                    return n;
+                }, (_, _) -> {});
+            }
+            assertEquals(JOBS - 1, last.await());
+        }
+
+        assertEquals(IntStream.range(0, JOBS).boxed().toList(), started);
+        assertEquals(0, overlapping[0], "jobs of one lane ran concurrently");
+    }
+
+    @Test
+    void cancelledJobDoesNotHoldUpItsLane() throws Exception {
+        Object lane = new Object();
+        List<String> ran = Collections.synchronizedList(new ArrayList<>());
+
+        try (JobService jobs = new JobService(Runnable::run)) {
+            Job<Void> first = jobs.submit(lane, "first", _ -> {
+                Thread.sleep(50);
+                ran.add("first");
+                return null;
+            }, (_, _) -> {});
+            Job<Void> cancelled = jobs.submit(lane, "cancelled", _ -> {
+                ran.add("cancelled");
+                return null;
+            }, (_, _) -> {});
+            Job<Void> third = jobs.submit(lane, "third", _ -> {
+                ran.add("third");
+                return null;
+            }, (_, _) -> {});
+
+            cancelled.cancel();
+            third.await();
+            first.await();
+        }
+
+        assertEquals(List.of("first", "third"), ran);
+    }
+}
@@ -0,0 +1,32 @@
+package org.s30173.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.s30173.Controller;
+import org.s30173.helpers.Config;
+
+import javax.script.ScriptException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * A stage that throws is still timed and counted, as a failure, see {@link StageTrace}.
+ */
+class StageTraceTest {
+    @Test
+    void failedStageIsRecorded() {
+        Metrics.enable();
+        try (Controller controller = new Controller("org.s30173.models.Model1")) {
+            controller.readDataFrom(Config.DATA_DIR + "data1.txt").runModel();
+            Metrics.reset();
+
+            assertThrows(ScriptException.class, () -> controller.runScript("throw new IllegalStateException('x')"));
+            assertEquals(1, Metrics.count(Stage.SCRIPT_EVAL));
+            assertEquals(1, Metrics.failures(Stage.SCRIPT_EVAL));
+
+            assertThrows(RuntimeException.class, () -> controller.readDataFrom(Config.DATA_DIR + "missing.txt"));
+            assertEquals(1, Metrics.failures(Stage.LOAD));
+            assertEquals(0, Metrics.failures(Stage.SCRIPT_COMPILE));
+        }
+    }
+}
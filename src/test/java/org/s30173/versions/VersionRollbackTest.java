@@ -0,0 +1,42 @@
+package org.s30173.versions;
+
+import org.junit.jupiter.api.Test;
+import org.s30173.Controller;
+import org.s30173.helpers.Config;
+
+import javax.script.ScriptException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A committed version keeps its values when a script later changes the objects they came from, here
+ * the list {@code PKB.collect { ... }} returns.
+ */
+class VersionRollbackTest {
+    private static final String MODEL = "org.s30173.models.Model1";
+
+    @Test
+    void listChangedAfterCommitRollsBack() throws ScriptException {
+        try (Controller c = new Controller(MODEL).keepVersions(true)) {
+            c.readDataFrom(Config.DATA_DIR + "data1.txt").runModel();
+            c.runScript("P = PKB.collect { it * 2 }");
+            Version committed = c.versions().head();
+            String results = c.getResultsAsTsv();
+            Object list = committed.get("P");
+
+            c.runScript("P[0] = -1; P << 5");
+            assertEquals(list, committed.get("P"), "the committed list changed with the script's");
+            assertEquals(1, VersionHistory.diff(committed, c.versions().head()).stream()
+                .filter(change -> change.name().equals("P")).count());
+
+            c.rollback(committed.id());
+            assertEquals(results, c.getResultsAsTsv());
+
+            c.runScript("P.clear()"); // the restored list is a copy too
+            assertEquals(list, committed.get("P"));
+            assertTrue(committed.get("P") instanceof List, "rolled back as a list, not as its text");
+        }
+    }
+}